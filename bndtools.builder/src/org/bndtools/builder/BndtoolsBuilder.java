@@ -11,6 +11,7 @@ import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.bndtools.api.BndtoolsConstants;
 import org.bndtools.api.ILogger;
 import org.bndtools.api.Logger;
@@ -25,7 +26,6 @@ import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.IResourceDelta;
 import org.eclipse.core.resources.IWorkspaceRoot;
 import org.eclipse.core.resources.IncrementalProjectBuilder;
-import org.eclipse.core.resources.ProjectScope;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -35,7 +35,6 @@ import org.eclipse.core.runtime.Status;
 import org.eclipse.jdt.core.IClasspathContainer;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.JavaCore;
-import org.eclipse.ui.preferences.ScopedPreferenceStore;
 
 import aQute.bnd.build.Project;
 import aQute.lib.io.IO;
@@ -72,6 +71,7 @@ public class BndtoolsBuilder extends IncrementalProjectBuilder {
 
     static {
         CnfWatcher.install();
+        MarkerSupport.install();
     }
 
     private Project model;
@@ -97,6 +97,8 @@ public class BndtoolsBuilder extends IncrementalProjectBuilder {
         buildLog = new BuildLogger(prefs.getBuildLogging());
 
         final BuildListeners listeners = new BuildListeners();
+        // set when the listeners are handed to the packaging, which releases them
+        final AtomicBoolean packaging = new AtomicBoolean();
 
         final IProject myProject = getProject();
         try {
@@ -123,160 +125,187 @@ public class BndtoolsBuilder extends IncrementalProjectBuilder {
                     return noreport();
             }
 
-            try {
-                return Central.bndCall(new Callable<IProject[]>() {
-                    @Override
-                    public IProject[] call() throws Exception {
-                        boolean force = kind == FULL_BUILD || kind == CLEAN_BUILD;
-                        model.clear();
-
-                        DeltaWrapper delta = new DeltaWrapper(model, getDelta(myProject), buildLog);
+            Callable<IProject[]> buildCall = new Callable<IProject[]>() {
+                @Override
+                public IProject[] call() throws Exception {
+                    boolean force = kind == FULL_BUILD || kind == CLEAN_BUILD;
+                    model.clear();
 
-                        boolean setupChanged = false;
+                    DeltaWrapper delta = new DeltaWrapper(model, getDelta(myProject), buildLog);
 
-                        if (!postponed && (delta.havePropertiesChanged(model) || delta.hasChangedSubbundles())) {
-                            buildLog.basic("project was dirty from changed bnd files postponed = " + postponed);
-                            model.forceRefresh();
-                            setupChanged = true;
-                        }
+                    boolean setupChanged = false;
 
-                        if (dirty.remove(model)) {
-                            buildLog.basic("project was dirty from a workspace refresh postponed = " + postponed);
-                            setupChanged = true && !postponed;
-                        }
+                    if (!postponed && (delta.havePropertiesChanged(model) || delta.hasChangedSubbundles())) {
+                        buildLog.basic("project was dirty from changed bnd files postponed = " + postponed);
+                        model.forceRefresh();
+                        setupChanged = true;
+                    }
 
-                        if (!force && !setupChanged && delta.hasEclipseChanged()) {
-                            buildLog.basic("Eclipse project had a buildpath change");
-                            setupChanged = true;
-                        }
+                    if (dirty.remove(model)) {
+                        buildLog.basic("project was dirty from a workspace refresh postponed = " + postponed);
+                        setupChanged = true && !postponed;
+                    }
 
-                        if (!force && !setupChanged && suggestClasspathContainerUpdate()) {
-                            buildLog.basic("Project classpath may need to be updated");
-                            setupChanged = true;
-                        }
+                    if (!force && !setupChanged && delta.hasEclipseChanged()) {
+                        buildLog.basic("Eclipse project had a buildpath change");
+                        setupChanged = true;
+                    }
 
-                        //
-                        // If we already know we are going to build, we
-                        // must handle the path errors. We make sure
-                        // prepare() is called so we get any build errors.
-                        //
+                    if (!force && !setupChanged && suggestClasspathContainerUpdate()) {
+                        buildLog.basic("Project classpath may need to be updated");
+                        setupChanged = true;
+                    }
 
-                        if (force || setupChanged) {
-                            model.setChanged();
-                            model.setDelayRunDependencies(true);
-                            model.prepare();
-
-                            markers.validate(model);
-                            markers.setMarkers(model, BndtoolsConstants.MARKER_BND_PATH_PROBLEM);
-                            model.clear();
-
-                            dependsOn = calculateDependsOn(model);
-
-                            //
-                            // We have a setup change so we MUST check both class path
-                            // changes and build order changes. Careful not to use an OR
-                            // operation (as I did) because they are shortcutted. Since it
-                            // is also nice to see why we had a change, we just collect the
-                            // reason of the change so we can report it to the log.
-                            //
-
-                            String changed = ""; // if empty, no change
-                            String del = "";
-                            if (requestClasspathContainerUpdate()) {
-                                changed += "Classpath container updated";
-                                del = " & ";
-                            }
+                    //
+                    // If we already know we are going to build, we
+                    // must handle the path errors. We make sure
+                    // prepare() is called so we get any build errors.
+                    //
 
-                            if (setBuildOrder(monitor)) {
-                                changed += del + "Build order changed";
-                            }
+                    if (force || setupChanged) {
+                        model.setChanged();
+                        model.setDelayRunDependencies(true);
+                        prepare(model, monitor);
 
-                            if (!changed.equals("")) {
-                                buildLog.basic("Setup changed: " + changed);
-                                return postpone();
-                            }
+                        markers.validate(model);
+                        markers.setMarkers(model, BndtoolsConstants.MARKER_BND_PATH_PROBLEM);
+                        CnfImpact.record(model);
+                        model.clear();
 
-                            force = true;
-                        }
+                        dependsOn = calculateDependsOn(model, monitor);
 
                         //
-                        // We did not postpone, so reset the flag
+                        // We have a setup change so we MUST check both class path
+                        // changes and build order changes. Careful not to use an OR
+                        // operation (as I did) because they are shortcutted. Since it
+                        // is also nice to see why we had a change, we just collect the
+                        // reason of the change so we can report it to the log.
                         //
-                        if (postponed)
-                            buildLog.full("Was postponed");
 
-                        force |= postponed;
-                        postponed = false;
-
-                        if (!force && delta.hasProjectChanged()) {
-                            buildLog.basic("project had changed files");
-                            force = true;
+                        String changed = ""; // if empty, no change
+                        String del = "";
+                        if (requestClasspathContainerUpdate()) {
+                            changed += "Classpath container updated";
+                            del = " & ";
                         }
 
-                        if (!force && hasUpstreamChanges()) {
-                            buildLog.basic("project had upstream changes");
-                            force = true;
+                        if (setBuildOrder(monitor)) {
+                            changed += del + "Build order changed";
                         }
 
-                        if (!force && delta.hasNoTarget(model)) {
-                            buildLog.basic("project has no target files");
-                            force = true;
+                        if (!changed.equals("")) {
+                            buildLog.basic("Setup changed: " + changed);
+                            return postpone();
                         }
 
-                        //
-                        // If we're not forced to build at this point
-                        // then we have an incremental build and
-                        // no reason to rebuild.
-                        //
+                        force = true;
+                    }
 
-                        if (!force) {
-                            buildLog.full("Auto/Incr. build, no changes detected");
-                            return noreport();
-                        }
+                    //
+                    // We did not postpone, so reset the flag
+                    //
+                    if (postponed)
+                        buildLog.full("Was postponed");
 
-                        if (model.isNoBundles()) {
-                            buildLog.basic("-nobundles was set, so no build");
-                            buildLog.setFiles(0);
-                            return report(markers);
-                        }
+                    force |= postponed;
+                    postponed = false;
 
-                        if (markers.hasBlockingErrors(delta)) {
-                            CompileErrorAction actionOnCompileError = getActionOnCompileError();
-                            if (actionOnCompileError != CompileErrorAction.build) {
-                                if (actionOnCompileError == CompileErrorAction.delete) {
-                                    buildLog.basic("Blocking errors, delete build files, quit");
-                                    deleteBuildFiles(model);
-                                    model.error("Will not build project %s until the compilation and/or path problems are fixed, output files are deleted.", myProject.getName());
-                                } else {
-                                    buildLog.basic("Blocking errors, leave old build files, quit");
-                                    model.error("Will not build project %s until the compilation and/or path problems are fixed, output files are kept.", myProject.getName());
-                                }
-                                return report(markers);
-                            }
-                            buildLog.basic("Blocking errors, continuing anyway");
-                            model.warning("Project %s has blocking errors but requested to continue anyway", myProject.getName());
-                        }
+                    if (!force && delta.hasProjectChanged()) {
+                        buildLog.basic("project had changed files");
+                        force = true;
+                    }
 
-                        deleteBuildFiles(model);
-                        Central.invalidateIndex();
+                    if (!force && hasUpstreamChanges()) {
+                        buildLog.basic("project had upstream changes");
+                        force = true;
+                    }
 
-                        File buildFiles[] = model.build();
+                    if (!force && delta.hasNoTarget(model)) {
+                        buildLog.basic("project has no target files");
+                        force = true;
+                    }
 
-                        if (buildFiles != null) {
-                            listeners.updateListeners(buildFiles, myProject);
-                            buildLog.setFiles(buildFiles.length);
-                        }
+                    //
+                    // If we're not forced to build at this point
+                    // then we have an incremental build and
+                    // no reason to rebuild.
+                    //
+
+                    if (!force) {
+                        buildLog.full("Auto/Incr. build, no changes detected");
+                        return noreport();
+                    }
 
-                        // We can now decorate based on the build we just did.
-                        PackageDecorator.updateDecoration(myProject, model);
+                    if (model.isNoBundles()) {
+                        buildLog.basic("-nobundles was set, so no build");
+                        buildLog.setFiles(0);
+                        return report(markers);
+                    }
 
-                        if (model.isCnf()) {
-                            model.getWorkspace().refresh(); // this is for bnd plugins built in cnf
+                    if (markers.hasBlockingErrors(delta)) {
+                        CompileErrorAction actionOnCompileError = getActionOnCompileError();
+                        if (actionOnCompileError != CompileErrorAction.build) {
+                            if (actionOnCompileError == CompileErrorAction.delete) {
+                                buildLog.basic("Blocking errors, delete build files, quit");
+                                deleteBuildFiles(model);
+                                model.error("Will not build project %s until the compilation and/or path problems are fixed, output files are deleted.", myProject.getName());
+                            } else {
+                                buildLog.basic("Blocking errors, leave old build files, quit");
+                                model.error("Will not build project %s until the compilation and/or path problems are fixed, output files are kept.", myProject.getName());
+                            }
+                            return report(markers);
                         }
+                        buildLog.basic("Blocking errors, continuing anyway");
+                        model.warning("Project %s has blocking errors but requested to continue anyway", myProject.getName());
+                    }
 
-                        return report(markers);
+                    deleteBuildFiles(model);
+                    Central.invalidateIndex();
+
+                    if (!model.isCnf()) {
+                        //
+                        // Packaging is handed to the coordinator so Eclipse can
+                        // move on to the next project. Independent projects are
+                        // packaged in parallel and the markers are reported
+                        // once the packaging completes.
+                        //
+                        buildLog.basic("Packaging scheduled");
+                        BuildCoordinator.schedule(myProject, model, dependsOn, listeners);
+                        packaging.set(true);
+                        return dependsOn;
                     }
-                }, monitor);
+
+                    File buildFiles[] = model.build();
+
+                    if (buildFiles != null) {
+                        listeners.updateListeners(buildFiles, myProject);
+                        buildLog.setFiles(buildFiles.length);
+                    }
+
+                    // We can now decorate based on the build we just did.
+                    PackageDecorator.updateDecoration(myProject, model);
+
+                    model.getWorkspace().refresh(); // this is for bnd plugins built in cnf
+
+                    return report(markers);
+                }
+            };
+
+            try {
+                //
+                // Make sure any pending packaging of this project and the
+                // projects it depends on has finished before we look at them.
+                //
+                BuildCoordinator.await(myProject, dependsOn);
+
+                //
+                // Building cnf can change the workspace so it needs
+                // the exclusive lock. Other projects only need their
+                // own lock so independent projects can build in parallel.
+                //
+                if (model.isCnf())
+                    return Central.bndCall(buildCall, monitor);
+                return Central.bndCall(model, buildCall, monitor);
             } catch (TimeoutException | InterruptedException e) {
                 logger.logWarning("Unable to build project " + myProject.getName(), e);
                 return postpone();
@@ -286,7 +315,8 @@ public class BndtoolsBuilder extends IncrementalProjectBuilder {
         } finally {
             if (buildLog.isActive())
                 logger.logInfo(buildLog.toString(myProject.getName()), null);
-            listeners.release(myProject);
+            if (!packaging.get())
+                listeners.release(myProject);
         }
     }
 
@@ -295,6 +325,7 @@ public class BndtoolsBuilder extends IncrementalProjectBuilder {
     }
 
     private IProject[] report(MarkerSupport markers) throws Exception {
+        BuildCoordinator.reporting(getProject());
         markers.setMarkers(model, BndtoolsConstants.MARKER_BND_PROBLEM);
         return dependsOn;
     }
@@ -325,7 +356,8 @@ public class BndtoolsBuilder extends IncrementalProjectBuilder {
                 return;
 
             try {
-                Central.bndCall(new Callable<Void>() {
+                BuildCoordinator.await(myProject, null);
+                Central.bndCall(model, new Callable<Void>() {
                     @Override
                     public Void call() throws Exception {
                         model.clean();
@@ -444,8 +476,27 @@ public class BndtoolsBuilder extends IncrementalProjectBuilder {
         return targetDirPath;
     }
 
-    private IProject[] calculateDependsOn(Project model) throws Exception {
-        Collection<Project> dependsOn = model.getDependson();
+    /*
+     * Preparing a project reads and initializes state of the bnd workspace,
+     * so it is serialized with the preparation of other projects.
+     */
+    private static void prepare(final Project model, IProgressMonitor monitor) throws Exception {
+        Central.bndWorkspaceCall(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                model.prepare();
+                return null;
+            }
+        }, monitor);
+    }
+
+    private IProject[] calculateDependsOn(final Project model, IProgressMonitor monitor) throws Exception {
+        Collection<Project> dependsOn = Central.bndWorkspaceCall(new Callable<Collection<Project>>() {
+            @Override
+            public Collection<Project> call() throws Exception {
+                return model.getDependson();
+            }
+        }, monitor);
 
         IWorkspaceRoot wsroot = getProject().getWorkspace().getRoot();
 
@@ -469,8 +520,7 @@ public class BndtoolsBuilder extends IncrementalProjectBuilder {
     }
 
     private CompileErrorAction getActionOnCompileError() {
-        ScopedPreferenceStore store = new ScopedPreferenceStore(new ProjectScope(getProject()), BndtoolsConstants.CORE_PLUGIN_ID);
-        return CompileErrorAction.parse(store.getString(CompileErrorAction.PREFERENCE_KEY));
+        return BuilderPlugin.getInstance().getRegistry().getCompileErrorAction(getProject());
     }
 
 }
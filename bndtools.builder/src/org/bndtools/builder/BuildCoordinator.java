@@ -0,0 +1,259 @@
+package org.bndtools.builder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bndtools.api.BndtoolsConstants;
+import org.bndtools.api.ILogger;
+import org.bndtools.api.Logger;
+import org.bndtools.builder.decorator.ui.PackageDecorator;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.resources.WorkspaceJob;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+import aQute.bnd.build.Project;
+import bndtools.central.Central;
+
+/**
+ * Coordinates the packaging of bnd projects so that independent projects are packaged in parallel.
+ * <p>
+ * Eclipse calls the builders in its serial build order. Once a project has been compiled and the builder has decided
+ * it must be packaged, the packaging is handed to the coordinator. The coordinator starts it as soon as the upstream
+ * projects, as defined by {@link Project#getDependson()}, have produced their build files, while Eclipse moves on to
+ * the next project. The number of projects packaged at the same time is bounded by the number of processors.
+ * <p>
+ * Packaging jobs belong to {@link ResourcesPlugin#FAMILY_MANUAL_BUILD} so that anybody waiting for the build to
+ * finish, such as a launch, also waits for the packaging.
+ */
+class BuildCoordinator {
+    private static final ILogger logger = Logger.getLogger(BuildCoordinator.class);
+    private static final Semaphore workers = new Semaphore(Math.max(1, Runtime.getRuntime().availableProcessors()));
+    private static final ConcurrentMap<String,PackageJob> inflight = new ConcurrentHashMap<String,PackageJob>();
+    /*
+     * Counts the reports of the problems of each project. A report job only
+     * sets the markers if no newer build reported in the meantime.
+     */
+    private static final ConcurrentMap<String,AtomicLong> reports = new ConcurrentHashMap<String,AtomicLong>();
+
+    private BuildCoordinator() {}
+
+    /**
+     * Schedule the packaging of a project. The packaging starts once all upstream projects have been packaged.
+     *
+     * @param project
+     *            The Eclipse project.
+     * @param model
+     *            The bnd project, already prepared by the builder.
+     * @param upstream
+     *            The Eclipse projects this project depends on.
+     * @param listeners
+     *            The build listeners of the build, which were told the build is starting. They are told about the built
+     *            bundles and released when the packaging is reported.
+     */
+    static void schedule(IProject project, Project model, IProject[] upstream, BuildListeners listeners) {
+        List<PackageJob> waitFor = new ArrayList<PackageJob>();
+        for (IProject p : upstream) {
+            PackageJob job = inflight.get(p.getName());
+            if (job != null)
+                waitFor.add(job);
+        }
+
+        PackageJob job = new PackageJob(project, model, waitFor, nextReport(project), listeners);
+        PackageJob previous = inflight.put(project.getName(), job);
+        if (previous != null) {
+            // the builder always awaits the previous packaging before building again
+            job.waitFor.add(previous);
+        }
+        job.schedule();
+    }
+
+    /**
+     * Wait for the packaging of the project and its upstream projects to complete. This must be called before the
+     * builder looks at the state of the project since the packaging updates the project and its build files.
+     *
+     * @param project
+     *            The Eclipse project.
+     * @param upstream
+     *            The Eclipse projects this project depends on. May be {@code null}.
+     */
+    static void await(IProject project, IProject[] upstream) throws InterruptedException {
+        if (upstream != null) {
+            for (IProject p : upstream) {
+                join(p);
+            }
+        }
+        join(project);
+    }
+
+    /**
+     * Record that the builder reports the problems of a project itself, so a pending report of an earlier packaging
+     * does not replace its markers.
+     */
+    static void reporting(IProject project) {
+        nextReport(project);
+    }
+
+    private static long nextReport(IProject project) {
+        AtomicLong counter = reports.get(project.getName());
+        if (counter == null) {
+            AtomicLong previous = reports.putIfAbsent(project.getName(), counter = new AtomicLong());
+            if (previous != null)
+                counter = previous;
+        }
+        return counter.incrementAndGet();
+    }
+
+    private static boolean isLatestReport(IProject project, long report) {
+        AtomicLong counter = reports.get(project.getName());
+        return counter != null && counter.get() == report;
+    }
+
+    private static void join(IProject project) throws InterruptedException {
+        PackageJob job = inflight.get(project.getName());
+        if (job != null)
+            job.join();
+    }
+
+    private static class PackageJob extends Job {
+        private final IProject project;
+        private final Project model;
+        final List<PackageJob> waitFor;
+        private final long report;
+        private final BuildListeners listeners;
+
+        PackageJob(IProject project, Project model, List<PackageJob> waitFor, long report, BuildListeners listeners) {
+            super("Packaging " + project.getName());
+            this.project = project;
+            this.model = model;
+            this.waitFor = waitFor;
+            this.report = report;
+            this.listeners = listeners;
+            setSystem(true);
+        }
+
+        @Override
+        public boolean belongsTo(Object family) {
+            return family == ResourcesPlugin.FAMILY_MANUAL_BUILD || family == BuildCoordinator.class;
+        }
+
+        @Override
+        protected IStatus run(final IProgressMonitor monitor) {
+            ReportJob reportJob = null;
+            try {
+                for (PackageJob job : waitFor) {
+                    job.join();
+                }
+
+                workers.acquire();
+                try {
+                    // the problems are copied under the project lock, before a next build clears them
+                    reportJob = Central.bndCall(model, new Callable<ReportJob>() {
+                        @Override
+                        public ReportJob call() throws Exception {
+                            File[] buildFiles = null;
+                            try {
+                                // a prepared project only reads the state of the workspace while it is built
+                                Central.bndWorkspaceCall(new Callable<Void>() {
+                                    @Override
+                                    public Void call() throws Exception {
+                                        model.prepare();
+                                        return null;
+                                    }
+                                }, monitor);
+                                buildFiles = model.build();
+                            } catch (Exception e) {
+                                model.exception(e, "Unable to package project %s: %s", project.getName(), e);
+                            }
+                            return new ReportJob(PackageJob.this, buildFiles, new MarkerSupport.Problems(model));
+                        }
+                    }, monitor);
+                } finally {
+                    workers.release();
+                }
+                return Status.OK_STATUS;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Status.CANCEL_STATUS;
+            } catch (Exception e) {
+                logger.logError("Unable to package project " + project.getName(), e);
+                String error = "Unable to package project " + project.getName() + ": " + e;
+                reportJob = new ReportJob(this, null, new MarkerSupport.Problems(Collections.singletonList(error), Collections.<String> emptyList()));
+                return new Status(IStatus.ERROR, BndtoolsBuilder.PLUGIN_ID, "Unable to package project " + project.getName(), e);
+            } finally {
+                if (reportJob != null) {
+                    reportJob.schedule();
+                } else {
+                    listeners.release(project);
+                    inflight.remove(project.getName(), this);
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates the Eclipse workspace with the results of the packaging. This needs the project as scheduling rule so
+     * it runs in its own job once the workspace build has released it. The packaging stays in flight until the report
+     * is done.
+     */
+    private static class ReportJob extends WorkspaceJob {
+        private final PackageJob packageJob;
+        private final IProject project;
+        private final Project model;
+        private final File[] buildFiles;
+        private final MarkerSupport.Problems problems;
+
+        ReportJob(PackageJob packageJob, File[] buildFiles, MarkerSupport.Problems problems) {
+            super("Reporting build of " + packageJob.project.getName());
+            this.packageJob = packageJob;
+            this.project = packageJob.project;
+            this.model = packageJob.model;
+            this.buildFiles = buildFiles;
+            this.problems = problems;
+            setRule(project);
+            setSystem(true);
+        }
+
+        @Override
+        public IStatus runInWorkspace(IProgressMonitor monitor) throws CoreException {
+            try {
+                if (!project.isOpen())
+                    return Status.OK_STATUS;
+
+                // the listeners are called without holding a bnd lock, so they may use Central
+                if (buildFiles != null)
+                    packageJob.listeners.updateListeners(buildFiles, project);
+
+                Central.bndCall(model, new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        // We can now decorate based on the build we just did.
+                        PackageDecorator.updateDecoration(project, model);
+
+                        // A newer build reported its own problems
+                        if (isLatestReport(project, packageJob.report))
+                            new MarkerSupport(project).setMarkers(model, problems, BndtoolsConstants.MARKER_BND_PROBLEM);
+                        return null;
+                    }
+                }, monitor);
+                return Status.OK_STATUS;
+            } catch (Exception e) {
+                return new Status(IStatus.ERROR, BndtoolsBuilder.PLUGIN_ID, "Unable to report build of project " + project.getName(), e);
+            } finally {
+                packageJob.listeners.release(project);
+                inflight.remove(project.getName(), packageJob);
+            }
+        }
+    }
+}
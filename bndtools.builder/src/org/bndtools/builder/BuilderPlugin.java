@@ -1,20 +1,30 @@
 package org.bndtools.builder;
 
+import org.bndtools.builder.classpath.JarInfoCache;
+import org.bndtools.builder.classpath.SourceBundleCache;
 import org.osgi.framework.BundleContext;
 
 public class BuilderPlugin extends org.eclipse.core.runtime.Plugin {
 
     private static BuilderPlugin instance = null;
 
+    private BuilderRegistry registry;
+
     public static BuilderPlugin getInstance() {
         synchronized (BuilderPlugin.class) {
             return instance;
         }
     }
 
+    BuilderRegistry getRegistry() {
+        return registry;
+    }
+
     @Override
     public void start(BundleContext context) throws Exception {
         super.start(context);
+        registry = new BuilderRegistry(context);
+        registry.open();
         synchronized (BuilderPlugin.class) {
             instance = this;
         }
@@ -22,9 +32,12 @@ public class BuilderPlugin extends org.eclipse.core.runtime.Plugin {
 
     @Override
     public void stop(BundleContext context) throws Exception {
+        JarInfoCache.save();
+        SourceBundleCache.save();
         synchronized (BuilderPlugin.class) {
             instance = null;
         }
+        registry.close();
         super.stop(context);
     }
 
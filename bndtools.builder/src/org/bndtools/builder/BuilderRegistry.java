@@ -0,0 +1,200 @@
+package org.bndtools.builder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.bndtools.api.BndtoolsConstants;
+import org.bndtools.api.ILogger;
+import org.bndtools.api.IValidator;
+import org.bndtools.api.Logger;
+import org.bndtools.build.api.BuildListener;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.ProjectScope;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IConfigurationElement;
+import org.eclipse.core.runtime.IExtension;
+import org.eclipse.core.runtime.IExtensionPoint;
+import org.eclipse.core.runtime.IRegistryEventListener;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.IPreferenceChangeListener;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.PreferenceChangeEvent;
+import org.osgi.framework.BundleContext;
+import org.osgi.util.tracker.ServiceTracker;
+
+import bndtools.preferences.CompileErrorAction;
+
+/**
+ * The contributions and settings the builder uses on every build.
+ * <p>
+ * The build listeners and validators contributed through the extension registry are instantiated when first needed
+ * and kept until the extensions change. The build listener services are tracked for the life of the plugin. The
+ * compile error action of a project is kept until the preferences of the project change or the project is closed.
+ */
+class BuilderRegistry implements IRegistryEventListener, IResourceChangeListener {
+    private static final ILogger logger = Logger.getLogger(BuilderRegistry.class);
+
+    private static final String BUILD_LISTENERS = "buildListeners";
+    private static final String VALIDATORS = "validators";
+
+    private final ServiceTracker<BuildListener,BuildListener> listenerTracker;
+    private final ConcurrentMap<IProject,PreferenceWatch> preferences = new ConcurrentHashMap<IProject,PreferenceWatch>();
+    private final ConcurrentMap<IProject,CompileErrorAction> compileErrorActions = new ConcurrentHashMap<IProject,CompileErrorAction>();
+    private volatile List<BuildListener> buildListeners;
+    private volatile List<IValidator> validators;
+
+    BuilderRegistry(BundleContext context) {
+        listenerTracker = new ServiceTracker<BuildListener,BuildListener>(context, BuildListener.class, null);
+    }
+
+    void open() {
+        listenerTracker.open();
+        Platform.getExtensionRegistry().addListener(this, BndtoolsConstants.CORE_PLUGIN_ID + "." + BUILD_LISTENERS);
+        Platform.getExtensionRegistry().addListener(this, BndtoolsConstants.CORE_PLUGIN_ID + "." + VALIDATORS);
+        ResourcesPlugin.getWorkspace().addResourceChangeListener(this, IResourceChangeEvent.PRE_CLOSE | IResourceChangeEvent.PRE_DELETE);
+    }
+
+    void close() {
+        ResourcesPlugin.getWorkspace().removeResourceChangeListener(this);
+        Platform.getExtensionRegistry().removeListener(this);
+        listenerTracker.close();
+        for (IProject project : preferences.keySet()) {
+            forget(project);
+        }
+        buildListeners = null;
+        validators = null;
+    }
+
+    /**
+     * Return the build listeners: the contributed listeners followed by the listener services.
+     *
+     * @return A new list, which may be modified by the caller
+     */
+    List<BuildListener> getBuildListeners() {
+        List<BuildListener> contributed = buildListeners;
+        if (contributed == null) {
+            contributed = createExecutableExtensions(BUILD_LISTENERS, BuildListener.class, "build listener");
+            buildListeners = contributed;
+        }
+
+        List<BuildListener> listeners = new ArrayList<BuildListener>(contributed);
+        BuildListener[] services = listenerTracker.getServices(new BuildListener[0]);
+        if (services != null)
+            Collections.addAll(listeners, services);
+        return listeners;
+    }
+
+    /**
+     * Return the contributed validators.
+     */
+    List<IValidator> getValidators() {
+        List<IValidator> contributed = validators;
+        if (contributed == null) {
+            contributed = createExecutableExtensions(VALIDATORS, IValidator.class, "validator");
+            validators = contributed;
+        }
+        return contributed;
+    }
+
+    /**
+     * Return the action to take on compile errors in a project.
+     */
+    CompileErrorAction getCompileErrorAction(IProject project) {
+        CompileErrorAction action = compileErrorActions.get(project);
+        if (action != null)
+            return action;
+
+        PreferenceWatch watch = new PreferenceWatch(project);
+        PreferenceWatch existing = preferences.putIfAbsent(project, watch);
+        if (existing == null)
+            watch.node.addPreferenceChangeListener(watch);
+        else
+            watch = existing;
+        action = CompileErrorAction.parse(watch.node.get(CompileErrorAction.PREFERENCE_KEY, null));
+        compileErrorActions.put(project, action);
+        return action;
+    }
+
+    private <T> List<T> createExecutableExtensions(String extensionPoint, Class<T> type, String kind) {
+        IConfigurationElement[] elements = Platform.getExtensionRegistry().getConfigurationElementsFor(BndtoolsConstants.CORE_PLUGIN_ID, extensionPoint);
+        List<T> instances = new ArrayList<T>(elements.length);
+        for (IConfigurationElement elem : elements) {
+            try {
+                instances.add(type.cast(elem.createExecutableExtension("class")));
+            } catch (Exception e) {
+                logger.logError("Unable to instantiate " + kind + ": " + elem.getAttribute("name"), e);
+            }
+        }
+        return Collections.unmodifiableList(instances);
+    }
+
+    private void forget(IProject project) {
+        compileErrorActions.remove(project);
+        PreferenceWatch watch = preferences.remove(project);
+        if (watch != null) {
+            try {
+                watch.node.removePreferenceChangeListener(watch);
+            } catch (IllegalStateException e) {
+                // the node was removed
+            }
+        }
+    }
+
+    /*
+     * Forgets the compile error action of a project when its preferences
+     * change
+     */
+    private class PreferenceWatch implements IPreferenceChangeListener {
+        final IProject project;
+        final IEclipsePreferences node;
+
+        PreferenceWatch(IProject project) {
+            this.project = project;
+            this.node = new ProjectScope(project).getNode(BndtoolsConstants.CORE_PLUGIN_ID);
+        }
+
+        @Override
+        public void preferenceChange(PreferenceChangeEvent event) {
+            if (CompileErrorAction.PREFERENCE_KEY.equals(event.getKey()))
+                compileErrorActions.remove(project);
+        }
+    }
+
+    @Override
+    public void added(IExtension[] extensions) {
+        extensionsChanged();
+    }
+
+    @Override
+    public void removed(IExtension[] extensions) {
+        extensionsChanged();
+    }
+
+    @Override
+    public void added(IExtensionPoint[] extensionPoints) {
+        extensionsChanged();
+    }
+
+    @Override
+    public void removed(IExtensionPoint[] extensionPoints) {
+        extensionsChanged();
+    }
+
+    private void extensionsChanged() {
+        buildListeners = null;
+        validators = null;
+    }
+
+    @Override
+    public void resourceChanged(IResourceChangeEvent event) {
+        IResource resource = event.getResource();
+        if (resource instanceof IProject)
+            forget((IProject) resource);
+    }
+}
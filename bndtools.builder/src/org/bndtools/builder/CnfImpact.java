@@ -0,0 +1,105 @@
+package org.bndtools.builder;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import aQute.bnd.build.Project;
+import aQute.bnd.build.Workspace;
+import aQute.bnd.osgi.Constants;
+import aQute.bnd.service.RepositoryPlugin;
+import aQute.lib.hex.Hex;
+import bndtools.central.Central;
+
+/**
+ * Change-impact analysis for changes in cnf.
+ * <p>
+ * When a project is set up by the builder, we record a fingerprint of the effective properties the project sees,
+ * including the properties and macros it inherits from {@code build.bnd}, the {@code -include} files and
+ * {@code cnf/ext}. After cnf changes, only the projects whose fingerprint changed need to be prepared again. A change
+ * in the set of repositories, or in the {@code -plugin} clauses configuring them, affects every project.
+ * <p>
+ * The fingerprints are calculated while holding the shared bnd workspace lock.
+ */
+class CnfImpact {
+    private static final Map<String,String> fingerprints = new ConcurrentHashMap<String,String>();
+    private static volatile String repositories;
+
+    private CnfImpact() {}
+
+    /**
+     * Record the fingerprint of a project which has just been prepared.
+     */
+    static void record(final Project model) throws Exception {
+        Central.bndReadCall(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                fingerprints.put(model.getName(), fingerprint(model));
+                repositories = repositories(model.getWorkspace());
+                return null;
+            }
+        }, new NullProgressMonitor());
+    }
+
+    /**
+     * Calculate the projects affected by a change in cnf. This must be called after the workspace has been refreshed.
+     * Projects for which no fingerprint was recorded are always considered affected.
+     */
+    static Collection<Project> affected(final Workspace workspace, final Collection<Project> projects) throws Exception {
+        return Central.bndReadCall(new Callable<Collection<Project>>() {
+            @Override
+            public Collection<Project> call() throws Exception {
+                String oldRepositories = repositories;
+                String newRepositories = repositories(workspace);
+                if (oldRepositories == null || !oldRepositories.equals(newRepositories)) {
+                    repositories = newRepositories;
+                    return projects;
+                }
+
+                List<Project> affected = new ArrayList<Project>();
+                for (Project project : projects) {
+                    String old = fingerprints.get(project.getName());
+                    if (old == null || !old.equals(fingerprint(project))) {
+                        fingerprints.remove(project.getName());
+                        affected.add(project);
+                    }
+                }
+                return affected;
+            }
+        }, new NullProgressMonitor());
+    }
+
+    private static String fingerprint(Project model) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        Set<String> keys = new TreeSet<String>(model.getPropertyKeys(true));
+        for (String key : keys) {
+            String value = model.getProperty(key);
+            digest.update(key.getBytes("UTF-8"));
+            digest.update((byte) '=');
+            if (value != null)
+                digest.update(value.getBytes("UTF-8"));
+            digest.update((byte) '\n');
+        }
+        return Hex.toHexString(digest.digest());
+    }
+
+    private static String repositories(Workspace workspace) {
+        StringBuilder sb = new StringBuilder();
+        String plugins = workspace.mergeProperties(Constants.PLUGIN);
+        if (plugins != null)
+            sb.append(plugins);
+        sb.append('\n');
+        for (RepositoryPlugin repo : workspace.getRepositories()) {
+            sb.append(repo.getName()).append('|').append(repo.getLocation()).append('\n');
+        }
+        return sb.toString();
+    }
+}
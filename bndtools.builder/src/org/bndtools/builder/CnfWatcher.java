@@ -1,6 +1,8 @@
 package org.bndtools.builder;
 
 import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeoutException;
 
 import org.bndtools.api.BndtoolsConstants;
 import org.bndtools.api.ILogger;
@@ -28,6 +30,8 @@ public class CnfWatcher implements IResourceChangeListener {
     private static final ILogger logger = Logger.getLogger(CnfWatcher.class);
     private static final CnfWatcher INSTANCE = new CnfWatcher();
 
+    private final RefreshJob refreshJob = new RefreshJob();
+
     static CnfWatcher install() {
         ResourcesPlugin.getWorkspace().addResourceChangeListener(INSTANCE, IResourceChangeEvent.POST_CHANGE);
         return INSTANCE;
@@ -79,29 +83,64 @@ public class CnfWatcher implements IResourceChangeListener {
             Project p = allProjects.iterator().next();
             DeltaWrapper dw = new DeltaWrapper(p, delta, new BuildLogger(0));
             if (dw.hasCnfChanged()) {
-                workspace.clear();
-                workspace.forceRefresh();
-                workspace.getPlugins();
+                // the listener may run on the UI thread, so the workspace is refreshed in a job
+                refreshJob.schedule();
+            }
+        } catch (Exception e) {
+            logger.logError("Detecting changes in cnf failed, ignoring", e);
+        }
+    }
 
-                BndtoolsBuilder.dirty.addAll(allProjects);
+    /*
+     * Refreshes the bnd workspace after a change in cnf, marks the projects
+     * affected by the change dirty and updates the workspace errors. The
+     * refresh needs the exclusive bnd lock; if it cannot be obtained, for
+     * instance during a long build, the job tries again later.
+     */
+    private static class RefreshJob extends WorkspaceJob {
+        private static final long RETRY_DELAY = 1000;
 
-                WorkspaceJob j = new WorkspaceJob("Update errors on workspace") {
+        RefreshJob() {
+            super("Update errors on workspace");
+            setSystem(true);
+        }
+
+        @Override
+        public IStatus runInWorkspace(IProgressMonitor monitor) throws CoreException {
+            try {
+                final Workspace workspace = Central.getWorkspaceIfPresent();
+                if (workspace == null)
+                    return Status.OK_STATUS;
+                IProject cnfProject = WorkspaceUtils.findCnfProject(ResourcesPlugin.getWorkspace().getRoot(), workspace);
+                if (cnfProject == null)
+                    return Status.OK_STATUS;
+
+                Collection<Project> allProjects = Central.bndCall(new Callable<Collection<Project>>() {
                     @Override
-                    public IStatus runInWorkspace(IProgressMonitor arg0) throws CoreException {
-                        try {
-                            MarkerSupport ms = new MarkerSupport(cnfProject);
-                            ms.deleteMarkers("*");
-                            ms.setMarkers(workspace, BndtoolsConstants.MARKER_BND_WORKSPACE_PROBLEM);
-                            return Status.OK_STATUS;
-                        } catch (Exception e) {
-                            return new Status(IStatus.ERROR, BndtoolsBuilder.PLUGIN_ID, "updating errors for workspace", e);
-                        }
+                    public Collection<Project> call() throws Exception {
+                        Collection<Project> allProjects = workspace.getAllProjects();
+                        workspace.clear();
+                        workspace.forceRefresh();
+                        workspace.getPlugins();
+                        return allProjects;
                     }
-                };
-                j.schedule();
+                }, monitor);
+
+                Collection<Project> affected = CnfImpact.affected(workspace, allProjects);
+                BndtoolsBuilder.dirty.addAll(affected);
+
+                MarkerSupport ms = new MarkerSupport(cnfProject);
+                ms.setMarkers(workspace, BndtoolsConstants.MARKER_BND_WORKSPACE_PROBLEM);
+                return Status.OK_STATUS;
+            } catch (TimeoutException e) {
+                if (monitor.isCanceled())
+                    return Status.CANCEL_STATUS;
+                logger.logInfo("Unable to refresh the bnd workspace now, trying again", e);
+                schedule(RETRY_DELAY);
+                return Status.OK_STATUS;
+            } catch (Exception e) {
+                return new Status(IStatus.ERROR, BndtoolsBuilder.PLUGIN_ID, "updating errors for workspace", e);
             }
-        } catch (Exception e) {
-            logger.logError("Detecting changes in cnf failed, ignoring", e);
         }
     }
 }
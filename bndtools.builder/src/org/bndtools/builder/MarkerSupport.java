@@ -2,8 +2,15 @@ package org.bndtools.builder;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.bndtools.api.ILogger;
 import org.bndtools.api.IProjectValidator;
@@ -13,13 +20,20 @@ import org.bndtools.build.api.BuildErrorDetailsHandler;
 import org.bndtools.build.api.BuildErrorDetailsHandlers;
 import org.bndtools.build.api.DefaultBuildErrorDetailsHandler;
 import org.bndtools.build.api.MarkerData;
+import org.bndtools.builder.utils.ASTCache;
 import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IMarkerDelta;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
-import org.eclipse.core.runtime.IConfigurationElement;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
-import org.eclipse.core.runtime.Platform;
 import org.eclipse.jdt.core.IJavaModelMarker;
 
 import aQute.bnd.build.Project;
@@ -32,6 +46,55 @@ import static org.bndtools.api.BndtoolsConstants.*;
 
 class MarkerSupport {
     private static final ILogger logger = Logger.getLogger(BndtoolsBuilder.class);
+
+    /*
+     * The bndtools marker types that block a build
+     */
+    private static final String[] BLOCKING_TYPES = {
+            MARKER_BND_PATH_PROBLEM, MARKER_BND_MISSING_WORKSPACE
+    };
+
+    /*
+     * The error markers of the blocking types per project, keyed on marker id.
+     * A project is scanned once and then kept up to date when markers are
+     * reconciled here and from the marker deltas of the workspace, so markers
+     * created elsewhere are seen as well. The project is forgotten when it is
+     * closed or deleted, and scanned again when a tracked marker no longer
+     * exists.
+     */
+    private static final ConcurrentMap<IProject,Map<Long,IResource>> blockingErrors = new ConcurrentHashMap<IProject,Map<Long,IResource>>();
+
+    private static final IResourceChangeListener blockingErrorsTracker = new IResourceChangeListener() {
+        @Override
+        public void resourceChanged(IResourceChangeEvent event) {
+            if (event.getType() != IResourceChangeEvent.POST_CHANGE) {
+                IResource resource = event.getResource();
+                if (resource instanceof IProject)
+                    blockingErrors.remove(resource);
+                return;
+            }
+
+            for (IMarkerDelta delta : event.findMarkerDeltas(null, true)) {
+                if (!isBlockingType(delta))
+                    continue;
+                IResource resource = delta.getResource();
+                Map<Long,IResource> errors = blockingErrors.get(resource.getProject());
+                if (errors == null)
+                    continue;
+                synchronized (errors) {
+                    if (delta.getKind() != IResourceDelta.REMOVED && delta.getAttribute(IMarker.SEVERITY, IMarker.SEVERITY_INFO) == IMarker.SEVERITY_ERROR)
+                        errors.put(delta.getId(), resource);
+                    else
+                        errors.remove(delta.getId());
+                }
+            }
+        }
+    };
+
+    static void install() {
+        ResourcesPlugin.getWorkspace().addResourceChangeListener(blockingErrorsTracker, IResourceChangeEvent.POST_CHANGE | IResourceChangeEvent.PRE_CLOSE | IResourceChangeEvent.PRE_DELETE);
+    }
+
     private final IProject project;
 
     MarkerSupport(IProject project) {
@@ -43,12 +106,19 @@ class MarkerSupport {
             if (containsError(dw, findMarkers(IJavaModelMarker.JAVA_MODEL_PROBLEM_MARKER)))
                 return true;
 
-            if (containsError(dw, findMarkers(MARKER_BND_PATH_PROBLEM)))
-                return true;
-
-            if (containsError(dw, findMarkers(MARKER_BND_MISSING_WORKSPACE)))
-                return true;
-
+            Map<Long,IResource> errors = getBlockingErrors();
+            if (!exist(errors)) {
+                // markers were deleted or restored by someone else, so scan again
+                blockingErrors.remove(project, errors);
+                errors = getBlockingErrors();
+            }
+            synchronized (errors) {
+                for (IResource resource : errors.values()) {
+                    // markers in the test folder don't count
+                    if (!dw.isTestBin(resource))
+                        return true;
+                }
+            }
             return false;
         } catch (CoreException e) {
             logger.logError("Error looking for project problem markers", e);
@@ -56,15 +126,86 @@ class MarkerSupport {
         }
     }
 
+    private static boolean exist(Map<Long,IResource> errors) {
+        synchronized (errors) {
+            for (Entry<Long,IResource> error : errors.entrySet()) {
+                IResource resource = error.getValue();
+                if (!resource.exists() || resource.findMarker(error.getKey()) == null)
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    private Map<Long,IResource> getBlockingErrors() throws CoreException {
+        Map<Long,IResource> errors = blockingErrors.get(project);
+        if (errors != null)
+            return errors;
+
+        errors = new HashMap<Long,IResource>();
+        for (String type : BLOCKING_TYPES) {
+            for (IMarker marker : findMarkers(type)) {
+                if (marker.getAttribute(IMarker.SEVERITY, IMarker.SEVERITY_INFO) == IMarker.SEVERITY_ERROR)
+                    errors.put(marker.getId(), marker.getResource());
+            }
+        }
+        Map<Long,IResource> previous = blockingErrors.putIfAbsent(project, errors);
+        return previous != null ? previous : errors;
+    }
+
     private IMarker[] findMarkers(String markerType) throws CoreException {
         IMarker[] markers = project.findMarkers(markerType, false, IResource.DEPTH_INFINITE);
         return markers;
     }
 
+    /**
+     * Reconcile the markers of a type, and its subtypes, with the errors and warnings of a model. Only the markers
+     * which changed are deleted or created, so unchanged problems cause no marker deltas.
+     */
     void setMarkers(Processor model, String markerType) throws Exception {
-        deleteMarkers(markerType);
-        createMarkers(model, IMarker.SEVERITY_ERROR, model.getErrors(), markerType);
-        createMarkers(model, IMarker.SEVERITY_WARNING, model.getWarnings(), markerType);
+        setMarkers(model, new Problems(model), markerType);
+    }
+
+    /**
+     * Reconcile the markers of a type, and its subtypes, with problems copied from a model.
+     */
+    void setMarkers(Processor model, Problems problems, String markerType) throws Exception {
+        List<MarkerData> markers = new ArrayList<MarkerData>();
+        // the handlers share the ASTs of the compilation units they locate markers in
+        ASTCache cache = ASTCache.open();
+        try {
+            collectMarkers(model, problems, IMarker.SEVERITY_ERROR, problems.errors, markerType, markers);
+            collectMarkers(model, problems, IMarker.SEVERITY_WARNING, problems.warnings, markerType, markers);
+        } finally {
+            cache.close();
+        }
+
+        Map<String,List<IMarker>> existing = new HashMap<String,List<IMarker>>();
+        for (IMarker marker : project.findMarkers(markerType, true, IResource.DEPTH_INFINITE)) {
+            String key = key(marker.getResource(), marker.getType(), marker.getAttributes());
+            List<IMarker> same = existing.get(key);
+            if (same == null) {
+                same = new ArrayList<IMarker>(1);
+                existing.put(key, same);
+            }
+            same.add(marker);
+        }
+
+        List<MarkerData> added = new ArrayList<MarkerData>();
+        for (MarkerData markerData : markers) {
+            List<IMarker> same = existing.get(key(markerData.getResource(), markerData.getTypeOverride(), markerData.getAttribs()));
+            if (same != null && !same.isEmpty())
+                same.remove(same.size() - 1);
+            else
+                added.add(markerData);
+        }
+
+        List<IMarker> obsolete = new ArrayList<IMarker>();
+        for (List<IMarker> same : existing.values()) {
+            obsolete.addAll(same);
+        }
+
+        apply(obsolete, added);
     }
 
     void deleteMarkers(String markerType) throws CoreException {
@@ -78,41 +219,50 @@ class MarkerSupport {
             project.deleteMarkers(markerType, true, IResource.DEPTH_INFINITE);
     }
 
-    private void createMarkers(Processor model, int severity, Collection<String> msgs, String markerType) throws Exception {
+    private void collectMarkers(Processor model, Problems problems, int severity, Collection<String> msgs, String markerType, List<MarkerData> markers) throws Exception {
         for (String msg : msgs) {
-            createMarker(model, severity, msg, markerType);
+            collectMarker(model, problems.locations.get(msg), severity, msg, markerType, markers);
         }
     }
 
     void createMarker(Processor model, int severity, String formatted, String markerType) throws Exception {
-        Location location = model != null ? model.getLocation(formatted) : null;
+        List<MarkerData> markers = new ArrayList<MarkerData>();
+        collectMarker(model, model != null ? model.getLocation(formatted) : null, severity, formatted, markerType, markers);
+        apply(Collections.<IMarker> emptyList(), markers);
+    }
+
+    /*
+     * Calculate the markers of a message. The marker data holds the complete
+     * type and attributes of the marker.
+     */
+    private void collectMarker(Processor model, Location location, int severity, String formatted, String markerType, List<MarkerData> markers) throws Exception {
         if (location != null) {
             String type = location.details != null ? location.details.getClass().getName() : null;
             BuildErrorDetailsHandler handler = BuildErrorDetailsHandlers.INSTANCE.findHandler(type);
 
-            List<MarkerData> markers = handler.generateMarkerData(project, model, location);
-            for (MarkerData markerData : markers) {
+            List<MarkerData> handlerMarkers = handler.generateMarkerData(project, model, location);
+            for (MarkerData markerData : handlerMarkers) {
                 IResource resource = markerData.getResource();
                 if (resource != null && resource.exists()) {
                     String typeOverride = markerData.getTypeOverride();
-                    IMarker marker = resource.createMarker(typeOverride != null ? typeOverride : markerType);
-                    marker.setAttribute(IMarker.SEVERITY, severity);
-                    marker.setAttribute("$bndType", type);
+                    Map<String,Object> attribs = new LinkedHashMap<String,Object>();
+                    attribs.put(IMarker.SEVERITY, severity);
+                    attribs.put("$bndType", type);
 
                     //
                     // Set location information
                     if (location.header != null)
-                        marker.setAttribute(BNDTOOLS_MARKER_HEADER_ATTR, location.header);
+                        attribs.put(BNDTOOLS_MARKER_HEADER_ATTR, location.header);
                     if (location.context != null)
-                        marker.setAttribute(BNDTOOLS_MARKER_CONTEXT_ATTR, location.context);
+                        attribs.put(BNDTOOLS_MARKER_CONTEXT_ATTR, location.context);
                     if (location.file != null)
-                        marker.setAttribute(BNDTOOLS_MARKER_FILE_ATTR, location.file);
+                        attribs.put(BNDTOOLS_MARKER_FILE_ATTR, location.file);
                     if (location.reference != null)
-                        marker.setAttribute(BNDTOOLS_MARKER_REFERENCE_ATTR, location.reference);
+                        attribs.put(BNDTOOLS_MARKER_REFERENCE_ATTR, location.reference);
 
-                    marker.setAttribute(BuildErrorDetailsHandler.PROP_HAS_RESOLUTIONS, markerData.hasResolutions());
-                    for (Entry<String,Object> attrib : markerData.getAttribs().entrySet())
-                        marker.setAttribute(attrib.getKey(), attrib.getValue());
+                    attribs.put(BuildErrorDetailsHandler.PROP_HAS_RESOLUTIONS, markerData.hasResolutions());
+                    attribs.putAll(markerData.getAttribs());
+                    markers.add(new MarkerData(resource, attribs, markerData.hasResolutions(), typeOverride != null ? typeOverride : markerType));
                 }
             }
             return;
@@ -121,9 +271,123 @@ class MarkerSupport {
         String defaultResource = model instanceof Project ? Project.BNDFILE : model instanceof Workspace ? Workspace.BUILDFILE : null;
         IResource resource = DefaultBuildErrorDetailsHandler.getDefaultResource(project, defaultResource);
         if (resource.exists()) {
-            IMarker marker = resource.createMarker(markerType);
-            marker.setAttribute(IMarker.SEVERITY, severity);
-            marker.setAttribute(IMarker.MESSAGE, formatted);
+            Map<String,Object> attribs = new LinkedHashMap<String,Object>();
+            attribs.put(IMarker.SEVERITY, severity);
+            attribs.put(IMarker.MESSAGE, formatted);
+            markers.add(new MarkerData(resource, attribs, false, markerType));
+        }
+    }
+
+    /*
+     * Delete and create markers in one workspace operation, so the changes are
+     * reported in a single resource delta.
+     */
+    private void apply(final Collection<IMarker> obsolete, final Collection<MarkerData> added) throws CoreException {
+        if (obsolete.isEmpty() && added.isEmpty())
+            return;
+
+        final IWorkspace workspace = project.getWorkspace();
+        workspace.run(new IWorkspaceRunnable() {
+            @Override
+            public void run(IProgressMonitor monitor) throws CoreException {
+                Map<Long,IResource> errors = blockingErrors.get(project);
+                if (!obsolete.isEmpty()) {
+                    if (errors != null) {
+                        synchronized (errors) {
+                            for (IMarker marker : obsolete) {
+                                errors.remove(marker.getId());
+                            }
+                        }
+                    }
+                    workspace.deleteMarkers(obsolete.toArray(new IMarker[obsolete.size()]));
+                }
+
+                for (MarkerData markerData : added) {
+                    IResource resource = markerData.getResource();
+                    if (!resource.exists())
+                        continue;
+
+                    List<String> names = new ArrayList<String>();
+                    List<Object> values = new ArrayList<Object>();
+                    for (Entry<String,Object> attrib : markerData.getAttribs().entrySet()) {
+                        if (attrib.getValue() != null) {
+                            names.add(attrib.getKey());
+                            values.add(attrib.getValue());
+                        }
+                    }
+                    IMarker marker = resource.createMarker(markerData.getTypeOverride());
+                    marker.setAttributes(names.toArray(new String[names.size()]), values.toArray());
+
+                    if (errors != null && isBlockingError(markerData)) {
+                        synchronized (errors) {
+                            errors.put(marker.getId(), resource);
+                        }
+                    }
+                }
+            }
+        }, null, IWorkspace.AVOID_UPDATE, null);
+    }
+
+    private static boolean isBlockingType(IMarkerDelta delta) {
+        for (String type : BLOCKING_TYPES) {
+            if (delta.isSubtypeOf(type))
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean isBlockingError(MarkerData markerData) {
+        if (!Integer.valueOf(IMarker.SEVERITY_ERROR).equals(markerData.getAttribs().get(IMarker.SEVERITY)))
+            return false;
+        for (String type : BLOCKING_TYPES) {
+            if (type.equals(markerData.getTypeOverride()))
+                return true;
+        }
+        return false;
+    }
+
+    /*
+     * The identity of a marker: its resource, type and attributes
+     */
+    private static String key(IResource resource, String type, Map<String,Object> attribs) {
+        Map<String,Object> sorted = new TreeMap<String,Object>();
+        if (attribs != null) {
+            for (Entry<String,Object> attrib : attribs.entrySet()) {
+                if (attrib.getValue() != null)
+                    sorted.put(attrib.getKey(), attrib.getValue());
+            }
+        }
+        return resource.getFullPath() + "\n" + type + "\n" + sorted;
+    }
+
+    /**
+     * The errors and warnings of a model with their locations. They are copied so they can be reported after the model
+     * was cleared for another build.
+     */
+    static final class Problems {
+        final List<String> errors;
+        final List<String> warnings;
+        final Map<String,Location> locations = new HashMap<String,Location>();
+
+        Problems(Processor model) {
+            this(model.getErrors(), model.getWarnings());
+            for (String msg : errors) {
+                addLocation(model, msg);
+            }
+            for (String msg : warnings) {
+                addLocation(model, msg);
+            }
+        }
+
+        Problems(Collection<String> errors, Collection<String> warnings) {
+            this.errors = new ArrayList<String>(errors);
+            this.warnings = new ArrayList<String>(warnings);
+        }
+
+        private void addLocation(Processor model, String msg) {
+            Location location = model.getLocation(msg);
+            if (location != null)
+                locations.put(msg, location);
         }
     }
 
@@ -148,25 +412,9 @@ class MarkerSupport {
         return false;
     }
 
-    static List<IValidator> loadValidators() {
-        List<IValidator> validators = null;
-        IConfigurationElement[] validatorElems = Platform.getExtensionRegistry().getConfigurationElementsFor(CORE_PLUGIN_ID, "validators");
-        if (validatorElems != null && validatorElems.length > 0) {
-            validators = new ArrayList<IValidator>(validatorElems.length);
-            for (IConfigurationElement elem : validatorElems) {
-                try {
-                    validators.add((IValidator) elem.createExecutableExtension("class"));
-                } catch (Exception e) {
-                    logger.logError("Unable to instantiate validator: " + elem.getAttribute("name"), e);
-                }
-            }
-        }
-        return validators;
-    }
-
     void validate(Project model) throws Exception {
-        List<IValidator> validators = loadValidators();
-        if (validators != null) {
+        List<IValidator> validators = BuilderPlugin.getInstance().getRegistry().getValidators();
+        if (!validators.isEmpty()) {
 
             for (IValidator v : validators) {
                 try {
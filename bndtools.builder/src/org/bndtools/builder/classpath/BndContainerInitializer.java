@@ -4,14 +4,13 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.WeakHashMap;
 import java.util.concurrent.Callable;
-import java.util.jar.Manifest;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -22,13 +21,18 @@ import org.bndtools.api.ModelListener;
 import org.bndtools.builder.BndtoolsBuilder;
 import org.bndtools.builder.BuildLogger;
 import org.bndtools.builder.BuilderPlugin;
-import org.bndtools.utils.jar.PseudoJar;
+import org.bndtools.builder.classpath.JarInfoCache.JarInfo;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.IWorkspaceRoot;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jdt.core.ClasspathContainerInitializer;
 import org.eclipse.jdt.core.IAccessRule;
 import org.eclipse.jdt.core.IClasspathAttribute;
@@ -45,7 +49,6 @@ import aQute.bnd.build.CircularDependencyException;
 import aQute.bnd.build.Container;
 import aQute.bnd.build.Project;
 import aQute.bnd.build.Workspace;
-import aQute.bnd.header.Parameters;
 import aQute.bnd.osgi.Constants;
 import aQute.bnd.osgi.Descriptors.PackageRef;
 import aQute.lib.io.IO;
@@ -62,7 +65,10 @@ import bndtools.preferences.BndPreferences;
 public class BndContainerInitializer extends ClasspathContainerInitializer implements ModelListener {
 
     static final ILogger logger = Logger.getLogger(BndContainerInitializer.class);
-    private static final ClasspathContainerSerializationHelper<BndContainer> serializationHelper = new ClasspathContainerSerializationHelper<>();
+    private static final ClasspathContainerSerializationHelper serializationHelper = new ClasspathContainerSerializationHelper();
+    private static final long BATCH_DELAY = 100L;
+    private static final Set<IJavaProject> pendingUpdates = new LinkedHashSet<IJavaProject>();
+    private static final Job batchUpdateJob = new BatchUpdateJob();
 
     public BndContainerInitializer() {
         super();
@@ -129,6 +135,9 @@ public class BndContainerInitializer extends ClasspathContainerInitializer imple
 
     /**
      * ModelListener modelChanged method.
+     * <p>
+     * The update is deferred and batched with the updates requested by other model changes, such as those fired for
+     * every project by a repository refresh, so JDT sees a single classpath change.
      */
     @Override
     public void modelChanged(Project model) throws Exception {
@@ -136,7 +145,77 @@ public class BndContainerInitializer extends ClasspathContainerInitializer imple
         if (javaProject == null) {
             return; // bnd project is not loaded in the workspace
         }
-        requestClasspathContainerUpdate(javaProject);
+        synchronized (pendingUpdates) {
+            pendingUpdates.add(javaProject);
+        }
+        batchUpdateJob.schedule(BATCH_DELAY);
+    }
+
+    /**
+     * Update the BndContainers of the projects, if they have one, and set all the changed containers with a single
+     * call to JDT. A project whose container cannot be calculated does not prevent the containers of the other
+     * projects from being set.
+     *
+     * @param javaProjects
+     *            The java projects of interest.
+     * @throws CoreException
+     *             The first failure, after the containers of the other projects have been set.
+     */
+    static void updateClasspathContainers(Collection<IJavaProject> javaProjects) throws CoreException {
+        List<IJavaProject> changedProjects = new ArrayList<IJavaProject>(javaProjects.size());
+        List<BndContainer> changedContainers = new ArrayList<BndContainer>(javaProjects.size());
+        CoreException failure = null;
+        for (IJavaProject javaProject : javaProjects) {
+            if (!javaProject.getProject().isOpen() || getClasspathContainer(javaProject) == null) {
+                continue; // project does not have a BndContainer
+            }
+            try {
+                Updater updater = new Updater(javaProject.getProject(), javaProject);
+                BndContainer container = updater.calculateClasspathContainer(false);
+                if (container != null) {
+                    changedProjects.add(javaProject);
+                    changedContainers.add(container);
+                }
+            } catch (CoreException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    logger.logError("Unable to update classpath container of " + javaProject.getElementName(), e);
+                }
+            }
+        }
+
+        if (!changedProjects.isEmpty()) {
+            Updater.setClasspathContainers(changedProjects.toArray(new IJavaProject[0]), changedContainers.toArray(new BndContainer[0]));
+            for (int i = 0; i < changedProjects.size(); i++) {
+                storeClasspathContainer(changedProjects.get(i).getProject(), changedContainers.get(i));
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static class BatchUpdateJob extends Job {
+        BatchUpdateJob() {
+            super("Updating bnd classpath containers");
+            setSystem(true);
+        }
+
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            List<IJavaProject> javaProjects;
+            synchronized (pendingUpdates) {
+                javaProjects = new ArrayList<IJavaProject>(pendingUpdates);
+                pendingUpdates.clear();
+            }
+            try {
+                updateClasspathContainers(javaProjects);
+            } catch (CoreException e) {
+                logger.logError("Unable to update classpath containers", e);
+            }
+            return Status.OK_STATUS;
+        }
     }
 
     /**
@@ -221,7 +300,6 @@ public class BndContainerInitializer extends ClasspathContainerInitializer imple
         private static final IClasspathAttribute EMPTY_INDEX = JavaCore.newClasspathAttribute(IClasspathAttribute.INDEX_LOCATION_ATTRIBUTE_NAME,
                 "platform:/plugin/" + BndtoolsBuilder.PLUGIN_ID + "/org/bndtools/builder/classpath/empty.index");
         private static final Pattern packagePattern = Pattern.compile("(?<=^|\\.)\\*(?=\\.|$)|\\.");
-        private static final Map<File,JarInfo> jarInfo = Collections.synchronizedMap(new WeakHashMap<File,JarInfo>());
 
         private final IProject project;
         private final IJavaProject javaProject;
@@ -252,14 +330,31 @@ public class BndContainerInitializer extends ClasspathContainerInitializer imple
                 return;
             }
 
+            BndContainer bndContainer = calculateClasspathContainer(init);
+            if (bndContainer != null) {
+                setClasspathContainer(javaProject, bndContainer);
+                storeClasspathContainer(project, bndContainer);
+            }
+        }
+
+        /**
+         * Calculate the container of the project.
+         *
+         * @return The new container or {@code null} if the current container is unchanged.
+         */
+        BndContainer calculateClasspathContainer(boolean init) throws CoreException {
+            if (model == null) { // this can happen during new project creation
+                return new BndContainer(EMPTY_ENTRIES, 0L);
+            }
+
             List<IClasspathEntry> newClasspath = Collections.emptyList();
             try {
-                newClasspath = Central.bndCall(new Callable<List<IClasspathEntry>>() {
+                newClasspath = Central.bndCall(model, new Callable<List<IClasspathEntry>>() {
                     @Override
                     public List<IClasspathEntry> call() throws Exception {
                         return calculateProjectClasspath();
                     }
-                });
+                }, new NullProgressMonitor());
             } catch (Exception e) {
                 SetLocation error = error("Unable to calculate classpath for project %s", e, project.getName());
                 logger.logError(error.location().message, e);
@@ -276,14 +371,12 @@ public class BndContainerInitializer extends ClasspathContainerInitializer imple
                         if (bndContainer.updateLastModified(lastModified)) {
                             storeClasspathContainer(project, bndContainer);
                         }
-                        return; // no change; so no need to set entries
+                        return null; // no change; so no need to set entries
                     }
                 }
             }
 
-            BndContainer bndContainer = new BndContainer(newClasspath.toArray(new IClasspathEntry[0]), lastModified);
-            setClasspathContainer(javaProject, bndContainer);
-            storeClasspathContainer(project, bndContainer);
+            return new BndContainer(newClasspath.toArray(new IClasspathEntry[0]), lastModified);
         }
 
         boolean suggestClasspathContainerUpdate() throws Exception {
@@ -323,20 +416,27 @@ public class BndContainerInitializer extends ClasspathContainerInitializer imple
         }
 
         static void setClasspathContainer(IJavaProject javaProject, BndContainer container) throws JavaModelException {
-            JavaCore.setClasspathContainer(BndtoolsConstants.BND_CLASSPATH_ID, new IJavaProject[] {
+            setClasspathContainers(new IJavaProject[] {
                     javaProject
-            }, new IClasspathContainer[] {
+            }, new BndContainer[] {
                     container
-            }, null);
+            });
+        }
+
+        static void setClasspathContainers(IJavaProject[] javaProjects, BndContainer[] containers) throws JavaModelException {
+            JavaCore.setClasspathContainer(BndtoolsConstants.BND_CLASSPATH_ID, javaProjects, containers, null);
 
             BndPreferences prefs = new BndPreferences();
             if (prefs.getBuildLogging() == BuildLogger.LOG_FULL) {
                 StringBuilder sb = new StringBuilder();
-                sb.append("ClasspathEntries ").append(javaProject.getProject().getName());
-                for (IClasspathEntry cpe : container.getClasspathEntries()) {
-                    sb.append("\n--- ").append(cpe);
+                for (int i = 0; i < javaProjects.length; i++) {
+                    sb.append("ClasspathEntries ").append(javaProjects[i].getProject().getName());
+                    for (IClasspathEntry cpe : containers[i].getClasspathEntries()) {
+                        sb.append("\n--- ").append(cpe);
+                    }
+                    sb.append("\n");
                 }
-                logger.logInfo(sb.append("\n").toString(), null);
+                logger.logInfo(sb.toString(), null);
             }
         }
 
@@ -464,44 +564,10 @@ public class BndContainerInitializer extends ClasspathContainerInitializer imple
         }
 
         private IPath calculateSourceAttachmentPath(IPath path, File file) {
-            JarInfo info = getJarInfo(file);
+            JarInfo info = JarInfoCache.getJarInfo(file);
             return info.hasSource ? path : null;
         }
 
-        private JarInfo getJarInfo(File file) {
-            final long lastModified = file.lastModified();
-            JarInfo info = jarInfo.get(file);
-            if ((info != null) && (lastModified == info.lastModified)) {
-                return info;
-            }
-            info = new JarInfo();
-            if (!file.exists()) {
-                return info;
-            }
-            info.lastModified = lastModified;
-            PseudoJar jar = new PseudoJar(file);
-            try {
-                Manifest mf = jar.readManifest();
-                if ((mf != null) && (mf.getMainAttributes().getValue(Constants.BUNDLE_MANIFESTVERSION) != null)) {
-                    Parameters exportPkgs = new Parameters(mf.getMainAttributes().getValue(Constants.EXPORT_PACKAGE));
-                    Set<String> exports = exportPkgs.keySet();
-                    info.exports = exports.toArray(new String[0]);
-                }
-                for (String entry = jar.nextEntry(); entry != null; entry = jar.nextEntry()) {
-                    if (entry.startsWith("OSGI-OPT/src/")) {
-                        info.hasSource = true; // use library path as source attachment path
-                        break;
-                    }
-                }
-            } catch (IOException e) {
-                logger.logInfo("Failed to read " + file, e);
-            } finally {
-                IO.close(jar);
-            }
-            jarInfo.put(file, info);
-            return info;
-        }
-
         private void addLibraryEntry(List<IClasspathEntry> classpath, IPath path, File file, List<IAccessRule> accessRules, List<IClasspathAttribute> extraAttrs) {
             IPath sourceAttachmentPath = calculateSourceAttachmentPath(path, file);
             classpath.add(JavaCore.newLibraryEntry(path, sourceAttachmentPath, null, toAccessRulesArray(accessRules), toClasspathAttributesArray(extraAttrs), false));
@@ -552,7 +618,7 @@ public class BndContainerInitializer extends ClasspathContainerInitializer imple
                 //$FALL-THROUGH$
             case REPO :
             case EXTERNAL :
-                JarInfo info = getJarInfo(c.getFile());
+                JarInfo info = JarInfoCache.getJarInfo(c.getFile());
                 if (info.exports == null) {
                     break; // no export; so full access
                 }
@@ -681,12 +747,4 @@ public class BndContainerInitializer extends ClasspathContainerInitializer imple
             }
         }
     }
-
-    private static class JarInfo {
-        boolean hasSource;
-        String[] exports;
-        long lastModified;
-
-        JarInfo() {}
-    }
 }
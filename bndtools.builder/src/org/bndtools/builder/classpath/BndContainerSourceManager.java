@@ -10,13 +10,11 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Properties;
-import java.util.jar.JarInputStream;
-import java.util.jar.Manifest;
 
 import org.bndtools.builder.BndtoolsBuilder;
 import org.bndtools.builder.BuilderPlugin;
+import org.bndtools.builder.classpath.JarInfoCache.JarInfo;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.IWorkspace;
@@ -30,15 +28,7 @@ import org.eclipse.jdt.core.IClasspathAttribute;
 import org.eclipse.jdt.core.IClasspathEntry;
 import org.eclipse.jdt.core.JavaCore;
 
-import aQute.bnd.build.Workspace;
-import aQute.bnd.build.WorkspaceRepository;
-import aQute.bnd.header.Attrs;
-import aQute.bnd.osgi.Domain;
-import aQute.bnd.service.RepositoryPlugin;
-import aQute.bnd.version.Version;
 import aQute.lib.io.IO;
-import bndtools.central.Central;
-import bndtools.central.RepositoryUtils;
 
 public class BndContainerSourceManager {
 
@@ -121,7 +111,7 @@ public class BndContainerSourceManager {
                     extraProps.put(attr.getName(), attr.getValue());
                 }
 
-                File sourceBundle = getSourceBundle(entry.getPath(), extraProps);
+                File sourceBundle = getSourceBundle(project, entry.getPath(), extraProps);
                 if (sourceBundle != null) {
                     srcPath = new Path(sourceBundle.getAbsolutePath());
                 }
@@ -137,18 +127,7 @@ public class BndContainerSourceManager {
         return configuredClassPathEntries;
     }
 
-    private static File getSourceBundle(IPath path, Map<String,String> props) {
-        Workspace bndWorkspace;
-
-        try {
-            bndWorkspace = Central.getWorkspace();
-            if (bndWorkspace == null) {
-                return null;
-            }
-        } catch (final Exception e) {
-            return null;
-        }
-
+    private static File getSourceBundle(IProject project, IPath path, Map<String,String> props) {
         IPath bundlePath = path;
         IWorkspace workspace = ResourcesPlugin.getWorkspace();
         IWorkspaceRoot root = workspace.getRoot();
@@ -157,49 +136,19 @@ public class BndContainerSourceManager {
             bundlePath = resource.getLocation();
         }
 
-        JarInputStream jarStream = null;
-        try {
-            jarStream = new JarInputStream(new FileInputStream(bundlePath.toFile()), false);
-            try {
-                Manifest manifest = jarStream.getManifest();
-                if (manifest == null) {
-                    return null;
-                }
-
-                Domain domain = Domain.domain(manifest);
-                Entry<String,Attrs> bsnAttrs = domain.getBundleSymbolicName();
-                if (bsnAttrs == null) {
-                    return null;
-                }
-                String bsn = bsnAttrs.getKey();
-                String version = domain.getBundleVersion();
-
-                if (version == null) {
-                    version = props.get("version");
-                }
-
-                for (RepositoryPlugin repo : RepositoryUtils.listRepositories(true)) {
-                    if (repo == null) {
-                        continue;
-                    }
-                    if (repo instanceof WorkspaceRepository) {
-                        continue;
-                    }
-                    File sourceBundle = repo.get(bsn + ".source", new Version(version), props);
-                    if (sourceBundle != null) {
-                        return sourceBundle;
-                    }
-                }
-            } finally {
-                jarStream.close();
-            }
-        } catch (final Exception e) {
-            // Ignore, something went wrong, or we could not find the source bundle
-        } finally {
-            IO.close(jarStream);
+        JarInfo info = JarInfoCache.getJarInfo(bundlePath.toFile());
+        if (info.bsn == null) {
+            return null;
+        }
+        String version = info.version;
+        if (version == null) {
+            version = props.get("version");
+        }
+        if (version == null) {
+            return null;
         }
 
-        return null;
+        return SourceBundleCache.getSourceBundle(JavaCore.create(project), info.bsn, version, props);
     }
 
     private static Properties loadSourceAttachmentProperties(final IProject project) throws CoreException {
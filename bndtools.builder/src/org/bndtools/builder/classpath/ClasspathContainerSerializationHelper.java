@@ -11,39 +11,295 @@
 
 package org.bndtools.builder.classpath;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.jdt.core.IAccessRule;
 import org.eclipse.jdt.core.IClasspathAttribute;
-import org.eclipse.jdt.core.IClasspathContainer;
 import org.eclipse.jdt.core.IClasspathEntry;
 import org.eclipse.jdt.core.JavaCore;
 
-class ClasspathContainerSerializationHelper<C extends IClasspathContainer> {
-    C readClasspathContainer(File file) throws IOException, ClassNotFoundException {
-        try (FileInputStream in = new FileInputStream(file)) {
-            return readClasspathContainer(in);
+import aQute.lib.io.IO;
+
+/**
+ * Reads and writes {@link BndContainer}s.
+ * <p>
+ * Containers are stored in a versioned binary format. All strings of a container are written once to a string table
+ * and referenced by index. When reading, paths, access rules and attributes are interned, so the many identical
+ * objects across the containers of all projects are shared. An intern map which reaches {@link #MAX_INTERNED} entries
+ * is cleared, since it only serves to share objects and must not grow with every path ever read. The file is read with
+ * a single read.
+ * <p>
+ * Containers written by earlier versions using Java object serialization can still be read.
+ */
+class ClasspathContainerSerializationHelper {
+    private static final int MAGIC = 0x424e4443; // "BNDC"
+    private static final int VERSION = 2;
+    private static final int VERSION_UTF = 1; // strings written with writeUTF, limited to 64KB
+    private static final int NULL = -1;
+    private static final int MAX_INTERNED = 10000;
+
+    private static final byte KIND_LIBRARY = 0;
+    private static final byte KIND_PROJECT = 1;
+
+    private final ConcurrentMap<String,IPath> paths = new ConcurrentHashMap<String,IPath>();
+    private final ConcurrentMap<String,IAccessRule> accessRules = new ConcurrentHashMap<String,IAccessRule>();
+    private final ConcurrentMap<String,IClasspathAttribute> attributes = new ConcurrentHashMap<String,IClasspathAttribute>();
+
+    BndContainer readClasspathContainer(File file) throws IOException, ClassNotFoundException {
+        byte[] data = IO.read(file);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        if (data.length < 8 || in.readInt() != MAGIC) {
+            return readLegacyClasspathContainer(new ByteArrayInputStream(data));
+        }
+        int version = in.readInt();
+        if (version != VERSION && version != VERSION_UTF) {
+            throw new IOException("Unsupported classpath container version " + version);
+        }
+
+        long lastModified = in.readLong();
+        String[] strings = new String[in.readInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = version == VERSION_UTF ? in.readUTF() : readString(in);
+        }
+
+        IClasspathEntry[] entries = new IClasspathEntry[in.readInt()];
+        for (int i = 0; i < entries.length; i++) {
+            byte kind = in.readByte();
+            IPath path = readPath(in, strings);
+            switch (kind) {
+            case KIND_LIBRARY : {
+                IPath sourceAttachmentPath = readPath(in, strings);
+                IPath sourceAttachmentRootPath = readPath(in, strings);
+                IAccessRule[] rules = readAccessRules(in, strings);
+                IClasspathAttribute[] attrs = readAttributes(in, strings);
+                boolean exported = in.readBoolean();
+                entries[i] = JavaCore.newLibraryEntry(path, sourceAttachmentPath, sourceAttachmentRootPath, rules, attrs, exported);
+                break;
+            }
+            case KIND_PROJECT : {
+                IAccessRule[] rules = readAccessRules(in, strings);
+                boolean combineAccessRules = in.readBoolean();
+                IClasspathAttribute[] attrs = readAttributes(in, strings);
+                boolean exported = in.readBoolean();
+                entries[i] = JavaCore.newProjectEntry(path, rules, combineAccessRules, attrs, exported);
+                break;
+            }
+            default :
+                throw new IOException("Unknown classpath entry kind " + kind);
+            }
+        }
+        return new BndContainer(entries, lastModified);
+    }
+
+    private IPath readPath(DataInputStream in, String[] strings) throws IOException {
+        int index = in.readInt();
+        if (index == NULL)
+            return null;
+        String portable = strings[index];
+        IPath path = paths.get(portable);
+        if (path == null)
+            path = intern(paths, portable, Path.fromPortableString(portable));
+        return path;
+    }
+
+    private IAccessRule[] readAccessRules(DataInputStream in, String[] strings) throws IOException {
+        int count = in.readInt();
+        if (count == NULL)
+            return null;
+        IAccessRule[] rules = new IAccessRule[count];
+        for (int i = 0; i < count; i++) {
+            IPath pattern = readPath(in, strings);
+            int kind = in.readInt();
+            String key = kind + ":" + pattern.toPortableString();
+            IAccessRule rule = accessRules.get(key);
+            if (rule == null)
+                rule = intern(accessRules, key, JavaCore.newAccessRule(pattern, kind));
+            rules[i] = rule;
+        }
+        return rules;
+    }
+
+    private IClasspathAttribute[] readAttributes(DataInputStream in, String[] strings) throws IOException {
+        int count = in.readInt();
+        if (count == NULL)
+            return null;
+        IClasspathAttribute[] attrs = new IClasspathAttribute[count];
+        for (int i = 0; i < count; i++) {
+            String name = strings[in.readInt()];
+            String value = strings[in.readInt()];
+            String key = name + "=" + value;
+            IClasspathAttribute attr = attributes.get(key);
+            if (attr == null)
+                attr = intern(attributes, key, JavaCore.newClasspathAttribute(name, value));
+            attrs[i] = attr;
+        }
+        return attrs;
+    }
+
+    private static <V> V intern(ConcurrentMap<String,V> map, String key, V value) {
+        if (map.size() >= MAX_INTERNED)
+            map.clear();
+        V existing = map.putIfAbsent(key, value);
+        return existing != null ? existing : value;
+    }
+
+    void writeClasspathContainer(BndContainer container, File file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            writeClasspathContainer(container, out);
+        }
+    }
+
+    void writeClasspathContainer(BndContainer container, OutputStream out) throws IOException {
+        StringTable strings = new StringTable();
+        IClasspathEntry[] entries = container.getClasspathEntries();
+
+        // First pass: collect the strings
+        for (IClasspathEntry entry : entries) {
+            strings.add(entry.getPath());
+            strings.add(entry.getSourceAttachmentPath());
+            strings.add(entry.getSourceAttachmentRootPath());
+            IAccessRule[] rules = entry.getAccessRules();
+            if (rules != null)
+                for (IAccessRule rule : rules) {
+                    strings.add(rule.getPattern());
+                }
+            IClasspathAttribute[] attrs = entry.getExtraAttributes();
+            if (attrs != null)
+                for (IClasspathAttribute attr : attrs) {
+                    strings.add(attr.getName());
+                    strings.add(attr.getValue());
+                }
+        }
+
+        DataOutputStream dout = new DataOutputStream(out);
+        dout.writeInt(MAGIC);
+        dout.writeInt(VERSION);
+        dout.writeLong(container.lastModified());
+        dout.writeInt(strings.list.size());
+        for (String string : strings.list) {
+            writeString(dout, string);
+        }
+
+        dout.writeInt(entries.length);
+        for (IClasspathEntry entry : entries) {
+            switch (entry.getEntryKind()) {
+            case IClasspathEntry.CPE_LIBRARY :
+                dout.writeByte(KIND_LIBRARY);
+                dout.writeInt(strings.indexOf(entry.getPath()));
+                dout.writeInt(strings.indexOf(entry.getSourceAttachmentPath()));
+                dout.writeInt(strings.indexOf(entry.getSourceAttachmentRootPath()));
+                writeAccessRules(dout, strings, entry.getAccessRules());
+                writeAttributes(dout, strings, entry.getExtraAttributes());
+                dout.writeBoolean(entry.isExported());
+                break;
+            case IClasspathEntry.CPE_PROJECT :
+                dout.writeByte(KIND_PROJECT);
+                dout.writeInt(strings.indexOf(entry.getPath()));
+                writeAccessRules(dout, strings, entry.getAccessRules());
+                dout.writeBoolean(entry.combineAccessRules());
+                writeAttributes(dout, strings, entry.getExtraAttributes());
+                dout.writeBoolean(entry.isExported());
+                break;
+            default :
+                throw new IOException("Unsupported classpath entry kind " + entry.getEntryKind());
+            }
+        }
+        dout.flush();
+    }
+
+    /*
+     * Strings are written as their length in bytes followed by their UTF-8
+     * encoding, since writeUTF cannot write strings longer than 64KB.
+     */
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeAccessRules(DataOutputStream out, StringTable strings, IAccessRule[] rules) throws IOException {
+        if (rules == null) {
+            out.writeInt(NULL);
+            return;
+        }
+        out.writeInt(rules.length);
+        for (IAccessRule rule : rules) {
+            out.writeInt(strings.indexOf(rule.getPattern()));
+            out.writeInt(rule.getKind() | (rule.ignoreIfBetter() ? IAccessRule.IGNORE_IF_BETTER : 0));
+        }
+    }
+
+    private static void writeAttributes(DataOutputStream out, StringTable strings, IClasspathAttribute[] attrs) throws IOException {
+        if (attrs == null) {
+            out.writeInt(NULL);
+            return;
+        }
+        out.writeInt(attrs.length);
+        for (IClasspathAttribute attr : attrs) {
+            out.writeInt(strings.indexOf(attr.getName()));
+            out.writeInt(strings.indexOf(attr.getValue()));
         }
     }
 
-    C readClasspathContainer(InputStream in) throws IOException, ClassNotFoundException {
+    private static final class StringTable {
+        final List<String> list = new ArrayList<String>();
+        final Map<String,Integer> indexes = new HashMap<String,Integer>();
+
+        void add(IPath path) {
+            if (path != null)
+                add(path.toPortableString());
+        }
+
+        void add(String string) {
+            if (!indexes.containsKey(string)) {
+                indexes.put(string, list.size());
+                list.add(string);
+            }
+        }
+
+        int indexOf(IPath path) {
+            return path == null ? NULL : indexOf(path.toPortableString());
+        }
+
+        int indexOf(String string) {
+            return indexes.get(string);
+        }
+    }
+
+    private static BndContainer readLegacyClasspathContainer(InputStream in) throws IOException, ClassNotFoundException {
         try (ObjectInputStream ois = new ObjectResolver(in)) {
-            @SuppressWarnings("unchecked")
-            C container = (C) ois.readObject();
-            return container;
+            return (BndContainer) ois.readObject();
         }
     }
 
+    /**
+     * Resolves the replacement objects of containers written with Java object serialization by earlier versions.
+     */
     private static final class ObjectResolver extends ObjectInputStream {
         ObjectResolver(InputStream in) throws IOException {
             super(in);
@@ -67,46 +323,8 @@ class ClasspathContainerSerializationHelper<C extends IClasspathContainer> {
         }
     }
 
-    void writeClasspathContainer(C container, File file) throws IOException {
-        try (FileOutputStream out = new FileOutputStream(file)) {
-            writeClasspathContainer(container, out);
-        }
-    }
-
-    void writeClasspathContainer(C container, OutputStream out) throws IOException {
-        try (ObjectOutputStream oos = new ObjectReplacer(out)) {
-            oos.writeObject(container);
-        }
-    }
-
-    private static final class ObjectReplacer extends ObjectOutputStream {
-        ObjectReplacer(OutputStream out) throws IOException {
-            super(out);
-            enableReplaceObject(true);
-        }
-
-        @Override
-        protected Object replaceObject(Object o) throws IOException {
-            if (o instanceof IClasspathEntry) {
-                IClasspathEntry e = (IClasspathEntry) o;
-                if (e.getEntryKind() == IClasspathEntry.CPE_PROJECT) {
-                    return new ProjectEntryReplace(e);
-                } else if (e.getEntryKind() == IClasspathEntry.CPE_LIBRARY) {
-                    return new LibraryEntryReplace(e);
-                }
-            } else if (o instanceof IClasspathAttribute) {
-                return new ClasspathAttributeReplace((IClasspathAttribute) o);
-            } else if (o instanceof IAccessRule) {
-                return new AccessRuleReplace((IAccessRule) o);
-            } else if (o instanceof IPath) {
-                return new PathReplace((IPath) o);
-            }
-            return super.replaceObject(o);
-        }
-    }
-
     /**
-     * A library IClasspathEntry replacement used for object serialization
+     * A library IClasspathEntry replacement used by the legacy object serialization format
      */
     static final class LibraryEntryReplace implements Serializable {
         private static final long serialVersionUID = 1L;
@@ -133,7 +351,7 @@ class ClasspathContainerSerializationHelper<C extends IClasspathContainer> {
     }
 
     /**
-     * A project IClasspathEntry replacement used for object serialization
+     * A project IClasspathEntry replacement used by the legacy object serialization format
      */
     static final class ProjectEntryReplace implements Serializable {
         private static final long serialVersionUID = 1L;
@@ -158,7 +376,7 @@ class ClasspathContainerSerializationHelper<C extends IClasspathContainer> {
     }
 
     /**
-     * An IClasspathAttribute replacement used for object serialization
+     * An IClasspathAttribute replacement used by the legacy object serialization format
      */
     static final class ClasspathAttributeReplace implements Serializable {
         private static final long serialVersionUID = 1L;
@@ -177,7 +395,7 @@ class ClasspathContainerSerializationHelper<C extends IClasspathContainer> {
     }
 
     /**
-     * An IAccessRule replacement used for object serialization
+     * An IAccessRule replacement used by the legacy object serialization format
      */
     static final class AccessRuleReplace implements Serializable {
         private static final long serialVersionUID = 1L;
@@ -196,7 +414,7 @@ class ClasspathContainerSerializationHelper<C extends IClasspathContainer> {
     }
 
     /**
-     * An IPath replacement used for object serialization
+     * An IPath replacement used by the legacy object serialization format
      */
     static final class PathReplace implements Serializable {
         private static final long serialVersionUID = 1L;
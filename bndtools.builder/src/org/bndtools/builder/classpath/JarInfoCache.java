@@ -0,0 +1,241 @@
+package org.bndtools.builder.classpath;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.jar.Manifest;
+
+import org.bndtools.api.ILogger;
+import org.bndtools.api.Logger;
+import org.bndtools.builder.BuilderPlugin;
+import org.bndtools.utils.jar.PseudoJar;
+
+import aQute.bnd.header.Attrs;
+import aQute.bnd.header.Parameters;
+import aQute.bnd.osgi.Constants;
+import aQute.bnd.osgi.Domain;
+import aQute.lib.io.IO;
+
+/**
+ * Cache of the identity, export and source information of the JARs on the classpath.
+ * <p>
+ * Entries are keyed on the path, size and last modified time of the JAR. A bounded LRU map holds the entries in use
+ * and is backed by a map which is persisted in the builder state location, so the JARs do not have to be read again
+ * after a restart.
+ */
+public final class JarInfoCache {
+    private static final ILogger logger = Logger.getLogger(JarInfoCache.class);
+    private static final String CACHE_FILENAME = "jarinfo.cache";
+    private static final int VERSION = 2;
+    private static final int MAX_ENTRIES = 2000;
+
+    private static final Map<String,JarInfo> lru = new LinkedHashMap<String,JarInfo>(64, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String,JarInfo> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private static Map<String,JarInfo> persisted;
+    private static boolean dirty;
+
+    private JarInfoCache() {}
+
+    static JarInfo getJarInfo(File file) {
+        String path = file.getAbsolutePath();
+        long lastModified = file.lastModified();
+        long length = file.length();
+
+        synchronized (lru) {
+            JarInfo info = lru.get(path);
+            if (info == null) {
+                info = getPersisted().get(path);
+            }
+            if ((info != null) && (lastModified == info.lastModified) && (length == info.length)) {
+                lru.put(path, info);
+                return info;
+            }
+        }
+
+        JarInfo info = new JarInfo();
+        if (!file.exists()) {
+            return info;
+        }
+        info.lastModified = lastModified;
+        info.length = length;
+        PseudoJar jar = new PseudoJar(file);
+        try {
+            Manifest mf = jar.readManifest();
+            if (mf != null) {
+                Domain domain = Domain.domain(mf);
+                Entry<String,Attrs> bsn = domain.getBundleSymbolicName();
+                if (bsn != null) {
+                    info.bsn = bsn.getKey();
+                    info.version = domain.getBundleVersion();
+                }
+            }
+            if ((mf != null) && (mf.getMainAttributes().getValue(Constants.BUNDLE_MANIFESTVERSION) != null)) {
+                Parameters exportPkgs = new Parameters(mf.getMainAttributes().getValue(Constants.EXPORT_PACKAGE));
+                Set<String> exports = exportPkgs.keySet();
+                info.exports = exports.toArray(new String[0]);
+            }
+            info.hasSource = jar.hasPrefix("OSGI-OPT/src/"); // use library path as source attachment path
+        } catch (IOException e) {
+            logger.logInfo("Failed to read " + file, e);
+        } finally {
+            IO.close(jar);
+        }
+
+        synchronized (lru) {
+            lru.put(path, info);
+            getPersisted().put(path, info);
+            dirty = true;
+        }
+        return info;
+    }
+
+    /**
+     * Store the cache in the builder state location. Entries of JARs which no longer exist or have changed are dropped,
+     * and at most {@link #MAX_ENTRIES} entries are kept, preferring the entries in use.
+     */
+    public static void save() {
+        synchronized (lru) {
+            if (persisted == null)
+                return;
+            if (prune())
+                dirty = true;
+            if (!dirty)
+                return;
+            File cacheFile = getCacheFile();
+            if (cacheFile == null)
+                return;
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(cacheFile)))) {
+                out.writeInt(VERSION);
+                out.writeInt(persisted.size());
+                for (Map.Entry<String,JarInfo> entry : persisted.entrySet()) {
+                    JarInfo info = entry.getValue();
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(info.lastModified);
+                    out.writeLong(info.length);
+                    out.writeBoolean(info.hasSource);
+                    writeString(out, info.bsn);
+                    writeString(out, info.version);
+                    if (info.exports == null) {
+                        out.writeInt(-1);
+                    } else {
+                        out.writeInt(info.exports.length);
+                        for (String export : info.exports) {
+                            out.writeUTF(export);
+                        }
+                    }
+                }
+                dirty = false;
+            } catch (IOException e) {
+                logger.logError("Unable to store jar information cache", e);
+                IO.delete(cacheFile);
+            }
+        }
+    }
+
+    /*
+     * Replace the persisted entries with the current entries, the entries in
+     * use first. Returns whether any entry was dropped.
+     */
+    private static boolean prune() {
+        Map<String,JarInfo> current = new LinkedHashMap<String,JarInfo>();
+        for (Map.Entry<String,JarInfo> entry : lru.entrySet()) {
+            if (isCurrent(entry.getKey(), entry.getValue()))
+                current.put(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String,JarInfo> entry : persisted.entrySet()) {
+            if (current.size() >= MAX_ENTRIES)
+                break;
+            if (!current.containsKey(entry.getKey()) && isCurrent(entry.getKey(), entry.getValue()))
+                current.put(entry.getKey(), entry.getValue());
+        }
+        boolean pruned = !current.keySet().equals(persisted.keySet());
+        persisted = new HashMap<String,JarInfo>(current);
+        return pruned;
+    }
+
+    private static boolean isCurrent(String path, JarInfo info) {
+        File file = new File(path);
+        return file.isFile() && file.lastModified() == info.lastModified && file.length() == info.length;
+    }
+
+    private static Map<String,JarInfo> getPersisted() {
+        if (persisted != null)
+            return persisted;
+
+        persisted = new HashMap<String,JarInfo>();
+        File cacheFile = getCacheFile();
+        if (cacheFile == null || !cacheFile.isFile())
+            return persisted;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if (in.readInt() != VERSION)
+                return persisted;
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                String path = in.readUTF();
+                JarInfo info = new JarInfo();
+                info.lastModified = in.readLong();
+                info.length = in.readLong();
+                info.hasSource = in.readBoolean();
+                info.bsn = readString(in);
+                info.version = readString(in);
+                int exports = in.readInt();
+                if (exports >= 0) {
+                    info.exports = new String[exports];
+                    for (int j = 0; j < exports; j++) {
+                        info.exports[j] = in.readUTF();
+                    }
+                }
+                persisted.put(path, info);
+            }
+        } catch (IOException e) {
+            logger.logInfo("Unable to load jar information cache", e);
+            persisted.clear();
+        }
+        return persisted;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null)
+            out.writeUTF(value);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static File getCacheFile() {
+        BuilderPlugin plugin = BuilderPlugin.getInstance();
+        if (plugin == null)
+            return null;
+        return IO.getFile(plugin.getStateLocation().toFile(), CACHE_FILENAME);
+    }
+
+    static class JarInfo {
+        String bsn;
+        String version;
+        boolean hasSource;
+        String[] exports;
+        long lastModified;
+        long length;
+
+        JarInfo() {}
+    }
+}
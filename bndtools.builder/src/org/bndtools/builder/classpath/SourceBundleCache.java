@@ -0,0 +1,314 @@
+package org.bndtools.builder.classpath;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.bndtools.api.ILogger;
+import org.bndtools.api.Logger;
+import org.bndtools.builder.BuilderPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.core.IJavaProject;
+
+import aQute.bnd.build.WorkspaceRepository;
+import aQute.bnd.service.RepositoryPlugin;
+import aQute.bnd.version.Version;
+import aQute.lib.io.IO;
+import bndtools.central.RepositoryUtils;
+
+/**
+ * Cache of the source bundle lookups in the repositories.
+ * <p>
+ * The result of looking up {@code <bsn>.source} in a repository is recorded per bsn, version and repository. Hits are
+ * valid as long as the source bundle exists; misses expire after {@link #MISS_TTL} so a source bundle which is later
+ * added to a repository is eventually found. The cache holds at most {@link #MAX_ENTRIES} lookups; lookups which are no
+ * longer valid are dropped first, then the oldest lookups. The cache is persisted in the builder state location.
+ * <p>
+ * Lookups which are not in the cache are never done by the caller, which may be calculating a classpath. They are
+ * queued and resolved by a background job which updates the classpath containers of the requesting projects when a
+ * source bundle was found.
+ */
+public final class SourceBundleCache {
+    private static final ILogger logger = Logger.getLogger(SourceBundleCache.class);
+    private static final String CACHE_FILENAME = "sources.cache";
+    private static final int VERSION = 1;
+    private static final long MISS_TTL = TimeUnit.HOURS.toMillis(24);
+    private static final int MAX_ENTRIES = 5000;
+
+    private static final Object lock = new Object();
+    private static Map<String,Lookup> lookups;
+    private static boolean dirty;
+
+    private static final Map<String,Request> pendingRequests = new LinkedHashMap<String,Request>();
+    private static final Set<IJavaProject> pendingProjects = new LinkedHashSet<IJavaProject>();
+    private static final Job lookupJob = new LookupJob();
+
+    private SourceBundleCache() {}
+
+    /**
+     * Return the source bundle of a bundle if it is known.
+     *
+     * @param javaProject
+     *            The project requesting the source bundle. Its classpath container is updated if the lookup has to be
+     *            done in the background and finds a source bundle.
+     * @param bsn
+     *            The bundle symbolic name of the bundle.
+     * @param version
+     *            The version of the bundle.
+     * @param props
+     *            The properties to pass to the repositories.
+     * @return The source bundle or {@code null} if none is known.
+     */
+    static File getSourceBundle(IJavaProject javaProject, String bsn, String version, Map<String,String> props) {
+        List<RepositoryPlugin> repos = listRepositories();
+        boolean unresolved = false;
+        long now = System.currentTimeMillis();
+        synchronized (lock) {
+            Map<String,Lookup> cache = getLookups();
+            for (RepositoryPlugin repo : repos) {
+                Lookup lookup = cache.get(key(bsn, version, repo));
+                if (lookup == null || !lookup.isValid(now)) {
+                    unresolved = true;
+                    continue;
+                }
+                if (lookup.path != null) {
+                    return new File(lookup.path);
+                }
+            }
+
+            if (!unresolved) {
+                return null;
+            }
+            String requestKey = bsn + ";" + version;
+            if (!pendingRequests.containsKey(requestKey)) {
+                pendingRequests.put(requestKey, new Request(bsn, version, props));
+            }
+            pendingProjects.add(javaProject);
+        }
+        lookupJob.schedule();
+        return null;
+    }
+
+    /**
+     * Store the cache in the builder state location.
+     */
+    public static void save() {
+        synchronized (lock) {
+            if (lookups == null)
+                return;
+            if (prune())
+                dirty = true;
+            if (!dirty)
+                return;
+            File cacheFile = getCacheFile();
+            if (cacheFile == null)
+                return;
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(cacheFile)))) {
+                out.writeInt(VERSION);
+                out.writeInt(lookups.size());
+                for (Map.Entry<String,Lookup> entry : lookups.entrySet()) {
+                    Lookup lookup = entry.getValue();
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(lookup.time);
+                    out.writeBoolean(lookup.path != null);
+                    if (lookup.path != null)
+                        out.writeUTF(lookup.path);
+                }
+                dirty = false;
+            } catch (IOException e) {
+                logger.logError("Unable to store source bundle cache", e);
+                IO.delete(cacheFile);
+            }
+        }
+    }
+
+    /*
+     * Drop the lookups which are no longer valid and, if there are still more
+     * than MAX_ENTRIES, the oldest lookups. Returns whether any lookup was
+     * dropped.
+     */
+    private static boolean prune() {
+        long now = System.currentTimeMillis();
+        List<Map.Entry<String,Lookup>> current = new ArrayList<Map.Entry<String,Lookup>>(lookups.size());
+        for (Map.Entry<String,Lookup> entry : lookups.entrySet()) {
+            if (entry.getValue().isValid(now))
+                current.add(entry);
+        }
+        if (current.size() > MAX_ENTRIES) {
+            Collections.sort(current, new Comparator<Map.Entry<String,Lookup>>() {
+                @Override
+                public int compare(Map.Entry<String,Lookup> a, Map.Entry<String,Lookup> b) {
+                    return Long.compare(b.getValue().time, a.getValue().time);
+                }
+            });
+            current = current.subList(0, MAX_ENTRIES);
+        }
+        if (current.size() == lookups.size())
+            return false;
+        Map<String,Lookup> pruned = new HashMap<String,Lookup>();
+        for (Map.Entry<String,Lookup> entry : current) {
+            pruned.put(entry.getKey(), entry.getValue());
+        }
+        lookups = pruned;
+        return true;
+    }
+
+    private static List<RepositoryPlugin> listRepositories() {
+        List<RepositoryPlugin> repos = new ArrayList<RepositoryPlugin>();
+        for (RepositoryPlugin repo : RepositoryUtils.listRepositories(true)) {
+            if (repo != null && !(repo instanceof WorkspaceRepository)) {
+                repos.add(repo);
+            }
+        }
+        return repos;
+    }
+
+    private static String key(String bsn, String version, RepositoryPlugin repo) {
+        return bsn + ";" + version + ";" + repo.getName();
+    }
+
+    private static Map<String,Lookup> getLookups() {
+        if (lookups != null)
+            return lookups;
+
+        lookups = new HashMap<String,Lookup>();
+        File cacheFile = getCacheFile();
+        if (cacheFile == null || !cacheFile.isFile())
+            return lookups;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if (in.readInt() != VERSION)
+                return lookups;
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                String key = in.readUTF();
+                long time = in.readLong();
+                String path = in.readBoolean() ? in.readUTF() : null;
+                lookups.put(key, new Lookup(time, path));
+            }
+        } catch (IOException e) {
+            logger.logInfo("Unable to load source bundle cache", e);
+            lookups.clear();
+        }
+        return lookups;
+    }
+
+    private static File getCacheFile() {
+        BuilderPlugin plugin = BuilderPlugin.getInstance();
+        if (plugin == null)
+            return null;
+        return IO.getFile(plugin.getStateLocation().toFile(), CACHE_FILENAME);
+    }
+
+    private static final class Lookup {
+        final long time;
+        final String path;
+
+        Lookup(long time, String path) {
+            this.time = time;
+            this.path = path;
+        }
+
+        boolean isValid(long now) {
+            if (path != null)
+                return new File(path).isFile();
+            return now - time < MISS_TTL;
+        }
+    }
+
+    private static final class Request {
+        final String bsn;
+        final String version;
+        final Map<String,String> props;
+
+        Request(String bsn, String version, Map<String,String> props) {
+            this.bsn = bsn;
+            this.version = version;
+            this.props = props;
+        }
+    }
+
+    private static final class LookupJob extends Job {
+        LookupJob() {
+            super("Looking up source bundles");
+            setSystem(true);
+        }
+
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            List<Request> requests;
+            List<IJavaProject> javaProjects;
+            synchronized (lock) {
+                requests = new ArrayList<Request>(pendingRequests.values());
+                javaProjects = new ArrayList<IJavaProject>(pendingProjects);
+                pendingRequests.clear();
+                pendingProjects.clear();
+            }
+
+            List<RepositoryPlugin> repos = listRepositories();
+            boolean found = false;
+            for (Request request : requests) {
+                if (monitor.isCanceled())
+                    return Status.CANCEL_STATUS;
+                for (RepositoryPlugin repo : repos) {
+                    String key = key(request.bsn, request.version, repo);
+                    synchronized (lock) {
+                        Lookup lookup = getLookups().get(key);
+                        if (lookup != null && lookup.isValid(System.currentTimeMillis())) {
+                            if (lookup.path != null)
+                                break;
+                            continue;
+                        }
+                    }
+
+                    File sourceBundle = null;
+                    try {
+                        sourceBundle = repo.get(request.bsn + ".source", new Version(request.version), request.props);
+                    } catch (Exception e) {
+                        // Ignore, something went wrong, so treat as not found
+                    }
+                    boolean hit = sourceBundle != null && sourceBundle.isFile();
+                    synchronized (lock) {
+                        Map<String,Lookup> cache = getLookups();
+                        cache.put(key, new Lookup(System.currentTimeMillis(), hit ? sourceBundle.getAbsolutePath() : null));
+                        if (cache.size() > MAX_ENTRIES)
+                            prune();
+                        dirty = true;
+                    }
+                    if (hit) {
+                        found = true;
+                        break;
+                    }
+                }
+            }
+
+            if (found) {
+                try {
+                    BndContainerInitializer.updateClasspathContainers(javaProjects);
+                } catch (CoreException e) {
+                    logger.logError("Unable to update classpath containers with source bundles", e);
+                }
+            }
+            return Status.OK_STATUS;
+        }
+    }
+}
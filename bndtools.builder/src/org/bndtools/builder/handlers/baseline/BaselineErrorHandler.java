@@ -3,6 +3,7 @@ package org.bndtools.builder.handlers.baseline;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -12,6 +13,7 @@ import org.bndtools.api.ILogger;
 import org.bndtools.api.Logger;
 import org.bndtools.build.api.AbstractBuildErrorDetailsHandler;
 import org.bndtools.build.api.MarkerData;
+import org.bndtools.builder.utils.ASTCache;
 import org.bndtools.builder.utils.MemberValuePairLocationRetriever;
 import org.bndtools.utils.jdt.ASTUtil;
 import org.eclipse.core.resources.IFile;
@@ -30,10 +32,9 @@ import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.IPackageDeclaration;
 import org.eclipse.jdt.core.IPackageFragment;
 import org.eclipse.jdt.core.ISourceRange;
+import org.eclipse.jdt.core.IType;
 import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.JavaModelException;
-import org.eclipse.jdt.core.dom.AST;
-import org.eclipse.jdt.core.dom.ASTParser;
 import org.eclipse.jdt.core.dom.ASTVisitor;
 import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.dom.ITypeBinding;
@@ -142,11 +143,7 @@ public class BaselineErrorHandler extends AbstractBuildErrorDetailsHandler {
                     for (IAnnotation annot : annots) {
                         String name = annot.getElementName();
                         if (ANNOTATION_VERSION_NO_PKG.equals(name) || ANNOTATION_VERSION_OSGI.equals(name) || ANNOTATION_VERSION_BND.equals(name)) {
-                            ASTParser parser = ASTParser.newParser(AST.JLS8);
-                            parser.setKind(ASTParser.K_COMPILATION_UNIT);
-                            parser.setSource(compUnit);
-                            parser.setResolveBindings(true);
-                            CompilationUnit ast = (CompilationUnit) parser.createAST(null);
+                            CompilationUnit ast = ASTCache.getAST(compUnit);
                             if (ast != null) {
                                 MemberValuePairLocationRetriever mvpRetriever = new MemberValuePairLocationRetriever(annot, new Predicate<String>() {
                                     @Override
@@ -170,6 +167,9 @@ public class BaselineErrorHandler extends AbstractBuildErrorDetailsHandler {
 
         Delta packageDelta = baselineInfo.packageDiff.getDelta();
 
+        // Collect the added and removed methods per class
+        Map<String,ClassChanges> changes = new LinkedHashMap<String,ClassChanges>();
+
         // Iterate into the package member diffs
         for (Diff pkgMemberDiff : baselineInfo.packageDiff.getChildren()) {
             // Skip deltas that have lesser significance than the overall package delta
@@ -194,11 +194,11 @@ public class BaselineErrorHandler extends AbstractBuildErrorDetailsHandler {
                         if (Delta.ADDED == classMemberDiff.getDelta()) {
                             Tree classMember = classMemberDiff.getNewer();
                             if (Type.METHOD == classMember.getType())
-                                markers.addAll(generateAddedMethodMarker(javaProject, className, classMember.getName(), classMember.ifAdded()));
+                                getClassChanges(changes, className).added.put(classMember.getName(), classMember.ifAdded());
                         } else if (Delta.REMOVED == classMemberDiff.getDelta()) {
                             Tree classMember = classMemberDiff.getOlder();
                             if (Type.METHOD == classMember.getType()) {
-                                markers.addAll(generateRemovedMethodMarker(javaProject, className, classMember.getName(), classMember.ifRemoved()));
+                                getClassChanges(changes, className).removed.put(classMember.getName(), classMember.ifRemoved());
                             }
                         }
                     }
@@ -207,6 +207,31 @@ public class BaselineErrorHandler extends AbstractBuildErrorDetailsHandler {
 
         }
 
+        // Parse the compilation units of the changed classes in one batch
+        Map<ICompilationUnit,List<ClassChanges>> changesByUnit = new LinkedHashMap<ICompilationUnit,List<ClassChanges>>();
+        for (ClassChanges classChanges : changes.values()) {
+            IType type = javaProject.findType(classChanges.className);
+            if (type == null)
+                continue;
+            ICompilationUnit cunit = type.getCompilationUnit();
+            if (cunit == null)
+                continue; // not a source type
+            List<ClassChanges> list = changesByUnit.get(cunit);
+            if (list == null) {
+                list = new LinkedList<ClassChanges>();
+                changesByUnit.put(cunit, list);
+            }
+            list.add(classChanges);
+        }
+        Map<ICompilationUnit,CompilationUnit> asts = ASTCache.getASTs(changesByUnit.keySet());
+
+        // Locate the changes of all classes of a compilation unit in a single pass
+        for (Map.Entry<ICompilationUnit,List<ClassChanges>> entry : changesByUnit.entrySet()) {
+            CompilationUnit ast = asts.get(entry.getKey());
+            if (ast != null)
+                markers.addAll(generateMethodMarkers(ast, entry.getValue()));
+        }
+
         return markers;
     }
 
@@ -217,62 +242,80 @@ public class BaselineErrorHandler extends AbstractBuildErrorDetailsHandler {
     }
     */
 
-    List<MarkerData> generateAddedMethodMarker(IJavaProject javaProject, String className, final String methodName, final Delta requiresDelta) throws JavaModelException {
-        final List<MarkerData> markers = new LinkedList<MarkerData>();
-        final CompilationUnit ast = createAST(javaProject, className);
-        if (ast != null) {
-            ast.accept(new ASTVisitor() {
-                @Override
-                public boolean visit(MethodDeclaration methodDecl) {
-                    String signature = ASTUtil.buildMethodSignature(methodDecl);
-                    if (signature.equals(methodName)) {
-                        // Create the marker attribs here
-                        Map<String,Object> attribs = new HashMap<String,Object>();
-                        attribs.put(IMarker.CHAR_START, methodDecl.getStartPosition());
-                        attribs.put(IMarker.CHAR_END, methodDecl.getStartPosition() + methodDecl.getLength());
-
-                        String message = String.format("This method was added, which requires a %s change to the package.", requiresDelta);
-                        attribs.put(IMarker.MESSAGE, message);
-
-                        markers.add(new MarkerData(ast.getJavaElement().getResource(), attribs, false));
-                    }
-
-                    return false;
-                }
-            });
+    private static ClassChanges getClassChanges(Map<String,ClassChanges> changes, String className) {
+        ClassChanges classChanges = changes.get(className);
+        if (classChanges == null) {
+            classChanges = new ClassChanges(className);
+            changes.put(className, classChanges);
         }
-        return markers;
+        return classChanges;
     }
 
-    List<MarkerData> generateRemovedMethodMarker(IJavaProject javaProject, final String className, final String methodName, final Delta requiresDelta) throws JavaModelException {
+    List<MarkerData> generateMethodMarkers(final CompilationUnit ast, final List<ClassChanges> unitChanges) {
         final List<MarkerData> markers = new LinkedList<MarkerData>();
-        final CompilationUnit ast = createAST(javaProject, className);
-        if (ast != null) {
-            ast.accept(new ASTVisitor() {
-                @Override
-                public boolean visit(TypeDeclaration typeDecl) {
-                    ITypeBinding typeBinding = typeDecl.resolveBinding();
-                    if (typeBinding != null) {
-                        if (typeBinding.getBinaryName().equals(className)) {
+        ast.accept(new ASTVisitor() {
+            @Override
+            public boolean visit(TypeDeclaration typeDecl) {
+                ITypeBinding typeBinding = typeDecl.resolveBinding();
+                if (typeBinding != null) {
+                    for (ClassChanges classChanges : unitChanges) {
+                        if (!typeBinding.getBinaryName().equals(classChanges.className))
+                            continue;
+
+                        SimpleName nameNode = typeDecl.getName();
+                        for (Map.Entry<String,Delta> removed : classChanges.removed.entrySet()) {
                             Map<String,Object> attribs = new HashMap<String,Object>();
-                            SimpleName nameNode = typeDecl.getName();
                             attribs.put(IMarker.CHAR_START, nameNode.getStartPosition());
                             attribs.put(IMarker.CHAR_END, nameNode.getStartPosition() + nameNode.getLength());
 
-                            String message = String.format("The method '%s' was removed, which requires a %s change to the package.", methodName, requiresDelta);
+                            String message = String.format("The method '%s' was removed, which requires a %s change to the package.", removed.getKey(), removed.getValue());
                             attribs.put(IMarker.MESSAGE, message);
 
                             markers.add(new MarkerData(ast.getJavaElement().getResource(), attribs, false));
-                            return false;
                         }
                     }
-                    return true;
                 }
-            });
-        }
+                return true;
+            }
+
+            @Override
+            public boolean visit(MethodDeclaration methodDecl) {
+                String signature = ASTUtil.buildMethodSignature(methodDecl);
+                for (ClassChanges classChanges : unitChanges) {
+                    Delta requiresDelta = classChanges.added.get(signature);
+                    if (requiresDelta == null)
+                        continue;
+
+                    // Create the marker attribs here
+                    Map<String,Object> attribs = new HashMap<String,Object>();
+                    attribs.put(IMarker.CHAR_START, methodDecl.getStartPosition());
+                    attribs.put(IMarker.CHAR_END, methodDecl.getStartPosition() + methodDecl.getLength());
+
+                    String message = String.format("This method was added, which requires a %s change to the package.", requiresDelta);
+                    attribs.put(IMarker.MESSAGE, message);
+
+                    markers.add(new MarkerData(ast.getJavaElement().getResource(), attribs, false));
+                }
+
+                return false;
+            }
+        });
         return markers;
     }
 
+    /**
+     * The methods added to and removed from a class, keyed on signature, with the change they require to the package.
+     */
+    static final class ClassChanges {
+        final String className;
+        final Map<String,Delta> added = new LinkedHashMap<String,Delta>();
+        final Map<String,Delta> removed = new LinkedHashMap<String,Delta>();
+
+        ClassChanges(String className) {
+            this.className = className;
+        }
+    }
+
     @Override
     public List<IMarkerResolution> getResolutions(IMarker marker) {
         List<IMarkerResolution> result = new LinkedList<IMarkerResolution>();
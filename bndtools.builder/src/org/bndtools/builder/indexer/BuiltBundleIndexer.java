@@ -2,16 +2,17 @@ package org.bndtools.builder.indexer;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.OutputStream;
+import java.io.InputStream;
 import java.net.URI;
+import java.security.MessageDigest;
 import java.text.MessageFormat;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.bndtools.api.ILogger;
 import org.bndtools.api.Logger;
@@ -23,15 +24,20 @@ import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.IWorkspaceRoot;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.IPath;
+import org.osgi.resource.Resource;
 import org.osgi.service.indexer.Builder;
 import org.osgi.service.indexer.Capability;
 import org.osgi.service.indexer.Requirement;
-import org.osgi.service.indexer.Resource;
 import org.osgi.service.indexer.ResourceAnalyzer;
-import org.osgi.service.indexer.ResourceIndexer;
+import org.osgi.service.indexer.ResourceIndexer.IndexResult;
 import org.osgi.service.indexer.impl.RepoIndex;
+import org.osgi.service.repository.ContentNamespace;
 
 import aQute.bnd.build.Project;
+import aQute.bnd.osgi.repository.XMLResourceGenerator;
+import aQute.bnd.osgi.resource.CapReqBuilder;
+import aQute.bnd.osgi.resource.ResourceBuilder;
+import aQute.lib.hex.Hex;
 import aQute.lib.io.IO;
 import bndtools.central.Central;
 import bndtools.central.WorkspaceR5Repository;
@@ -40,6 +46,16 @@ public class BuiltBundleIndexer extends AbstractBuildListener {
 
     private static final String INDEX_FILENAME = ".index";
 
+    /**
+     * The analyzed bundles, keyed by file. A bundle is only analyzed again when its SHA-256 changes.
+     */
+    private static final Map<File,IndexedBundle> indexed = new ConcurrentHashMap<File,IndexedBundle>();
+
+    /**
+     * The bundles in the index file last written for each project, keyed by project name.
+     */
+    private static final Map<String,Set<File>> written = new ConcurrentHashMap<String,Set<File>>();
+
     private final ILogger logger = Logger.getLogger(BuiltBundleIndexer.class);
     private final LogServiceAdapter logAdapter;
 
@@ -52,7 +68,7 @@ public class BuiltBundleIndexer extends AbstractBuildListener {
         IWorkspaceRoot wsroot = ResourcesPlugin.getWorkspace().getRoot();
         final URI workspaceRootUri = wsroot.getLocationURI();
 
-        Set<File> files = new HashSet<File>();
+        Set<File> files = new LinkedHashSet<File>();
         for (IPath path : paths) {
             try {
                 IFile ifile = wsroot.getFile(path);
@@ -65,66 +81,133 @@ public class BuiltBundleIndexer extends AbstractBuildListener {
             }
         }
 
-        // Generate the index file
-        File indexFile;
-        OutputStream output = null;
+        // Analyze the changed bundles and generate the index file
+        List<Resource> resources = new ArrayList<Resource>(files.size());
+        List<Resource> indexResources = new ArrayList<Resource>(files.size());
         try {
             Project model = Central.getProject(project);
             File target = model.getTarget();
-            indexFile = new File(target, INDEX_FILENAME);
+            File indexFile = new File(target, INDEX_FILENAME);
 
             IFile indexPath = wsroot.getFile(Central.toPath(indexFile));
-
-            // Create the indexer and add ResourceAnalyzers from plugins
-            RepoIndex indexer = new RepoIndex(logAdapter);
-            List<ResourceAnalyzer> analyzers = Central.getWorkspace().getPlugins(ResourceAnalyzer.class);
-            for (ResourceAnalyzer analyzer : analyzers) {
-                indexer.addAnalyzer(analyzer, null);
+            URI projectUri = project.getLocation().toFile().toURI();
+
+            RepoIndex indexer = null;
+            for (File file : files) {
+                String sha = sha256(file);
+                IndexedBundle bundle = indexed.get(file);
+                if (bundle == null || !bundle.sha.equals(sha)) {
+                    if (indexer == null)
+                        indexer = createIndexer(project, workspaceRootUri);
+                    IndexResult result = indexer.indexFile(file);
+                    URI fileUri = file.toURI();
+                    bundle = new IndexedBundle(sha, toResource(result, fileUri), toResource(result, projectUri.relativize(fileUri)));
+                    indexed.put(file, bundle);
+                }
+                resources.add(bundle.resource);
+                indexResources.add(bundle.indexResource);
             }
 
-            // Use an analyzer to add a marker capability to workspace resources
-            indexer.addAnalyzer(new ResourceAnalyzer() {
-                @Override
-                public void analyzeResource(Resource resource, List<Capability> capabilities, List<Requirement> requirements) throws Exception {
-                    Capability cap = new Builder().setNamespace("bndtools.workspace").addAttribute("bndtools.workspace", workspaceRootUri.toString()).addAttribute("project.path", project.getFullPath().toString()).buildCapability();
-                    capabilities.add(cap);
+            Set<File> previous = written.get(project.getName());
+            if (previous != null) {
+                // forget the bundles which are no longer built, such as removed sub-bundles
+                for (File file : previous) {
+                    if (!files.contains(file))
+                        indexed.remove(file);
                 }
-            }, null);
-
-            Map<String,String> config = new HashMap<String,String>();
-            config.put(ResourceIndexer.REPOSITORY_NAME, project.getName());
-            config.put(ResourceIndexer.ROOT_URL, project.getLocation().toFile().toURI().toString());
-            config.put(ResourceIndexer.PRETTY, "true");
-
-            output = new FileOutputStream(indexFile);
-            indexer.index(files, output, config);
-            IO.close(output);
-            indexPath.refreshLocal(IResource.DEPTH_ZERO, null);
-            if (indexPath.exists())
-                indexPath.setDerived(true, null);
+            }
+
+            if (indexer != null || !indexFile.isFile() || !files.equals(previous)) {
+                // Write a compact index with locations relative to the project, which is how it is loaded on startup
+                new XMLResourceGenerator().name(project.getName()).resources(indexResources).save(indexFile);
+                written.put(project.getName(), files);
+                indexPath.refreshLocal(IResource.DEPTH_ZERO, null);
+                if (indexPath.exists())
+                    indexPath.setDerived(true, null);
+            }
+
+            // forget bundles which were deleted, for instance with their project
+            for (Iterator<File> iter = indexed.keySet().iterator(); iter.hasNext();) {
+                if (!iter.next().isFile())
+                    iter.remove();
+            }
         } catch (Exception e) {
             logger.logError(MessageFormat.format("Failed to generate index file for bundles in project {0}.", project.getName()), e);
             return;
-        } finally {
-            IO.close(output);
         }
 
-        // Parse the index and add to the workspace repository
-        FileInputStream input = null;
+        // Hand the analyzed resources to the workspace repository
         try {
-            input = new FileInputStream(indexFile);
             WorkspaceR5Repository workspaceRepo = Central.getWorkspaceR5Repository();
-            workspaceRepo.loadProjectIndex(project, input, project.getLocation().toFile().toURI());
+            workspaceRepo.setProjectResources(project, resources);
         } catch (Exception e) {
             logger.logError("Failed to update workspace index.", e);
-        } finally {
-            if (input != null) {
-                try {
-                    input.close();
-                } catch (IOException e) {
-                    /* ignore */
-                }
+        }
+    }
+
+    private RepoIndex createIndexer(final IProject project, final URI workspaceRootUri) throws Exception {
+        // Create the indexer and add ResourceAnalyzers from plugins
+        RepoIndex indexer = new RepoIndex(logAdapter);
+        List<ResourceAnalyzer> analyzers = Central.getWorkspace().getPlugins(ResourceAnalyzer.class);
+        for (ResourceAnalyzer analyzer : analyzers) {
+            indexer.addAnalyzer(analyzer, null);
+        }
+
+        // Use an analyzer to add a marker capability to workspace resources
+        indexer.addAnalyzer(new ResourceAnalyzer() {
+            @Override
+            public void analyzeResource(org.osgi.service.indexer.Resource resource, List<Capability> capabilities, List<Requirement> requirements) throws Exception {
+                Capability cap = new Builder().setNamespace("bndtools.workspace").addAttribute("bndtools.workspace", workspaceRootUri.toString()).addAttribute("project.path", project.getFullPath().toString()).buildCapability();
+                capabilities.add(cap);
+            }
+        }, null);
+        return indexer;
+    }
+
+    private static Resource toResource(IndexResult result, URI url) throws Exception {
+        ResourceBuilder rb = new ResourceBuilder();
+        for (Capability cap : result.capabilities) {
+            CapReqBuilder builder = new CapReqBuilder(cap.getNamespace()).addAttributes(cap.getAttributes()).addDirectives(cap.getDirectives());
+            if (ContentNamespace.CONTENT_NAMESPACE.equals(cap.getNamespace())) {
+                builder.addAttribute(ContentNamespace.CAPABILITY_URL_ATTRIBUTE, url.toString());
             }
+            rb.addCapability(builder);
+        }
+        for (Requirement req : result.requirements) {
+            rb.addRequirement(new CapReqBuilder(req.getNamespace()).addAttributes(req.getAttributes()).addDirectives(req.getDirectives()));
+        }
+        return rb.build();
+    }
+
+    private static String sha256(File file) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            for (int n = in.read(buffer); n > 0; n = in.read(buffer)) {
+                digest.update(buffer, 0, n);
+            }
+        } finally {
+            IO.close(in);
+        }
+        return Hex.toHexString(digest.digest());
+    }
+
+    private static class IndexedBundle {
+        final String sha;
+        final Resource resource;
+        final Resource indexResource;
+
+        /**
+         * @param resource
+         *            The resource with an absolute location, as it is handed to the workspace repository.
+         * @param indexResource
+         *            The resource with a location relative to the project, as it is written to the index file.
+         */
+        IndexedBundle(String sha, Resource resource, Resource indexResource) {
+            this.sha = sha;
+            this.resource = resource;
+            this.indexResource = indexResource;
         }
     }
 
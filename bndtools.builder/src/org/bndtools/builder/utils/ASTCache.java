@@ -0,0 +1,142 @@
+package org.bndtools.builder.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTRequestor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+
+/**
+ * Cache of the ASTs, with resolved bindings, of compilation units during the creation of markers for a build.
+ * <p>
+ * Parsing a compilation unit with bindings is expensive and the error handlers of a build may need the same
+ * compilation unit for many markers. A scope is opened with {@link #open()} while the markers of a build are created;
+ * within the scope the ASTs are kept keyed on the compilation unit and the modification stamp of its resource, and
+ * the compilation units that are not yet cached are parsed together with {@link ASTParser#createASTs}, which shares
+ * the binding environment between them. The scope is bound to the current thread and the ASTs are released when it is
+ * closed. Outside of a scope the ASTs are parsed but not kept.
+ */
+public final class ASTCache {
+
+    private static final ThreadLocal<ASTCache> current = new ThreadLocal<ASTCache>();
+
+    private final Map<String,Entry> asts = new HashMap<String,Entry>();
+    private int depth;
+
+    private static final class Entry {
+        final long stamp;
+        final CompilationUnit ast;
+
+        Entry(long stamp, CompilationUnit ast) {
+            this.stamp = stamp;
+            this.ast = ast;
+        }
+    }
+
+    private ASTCache() {}
+
+    /**
+     * Open a scope on the current thread, or enter the scope which is already open. Each call must be matched by a
+     * call to {@link #close()}.
+     */
+    public static ASTCache open() {
+        ASTCache cache = current.get();
+        if (cache == null) {
+            cache = new ASTCache();
+            current.set(cache);
+        }
+        cache.depth++;
+        return cache;
+    }
+
+    /**
+     * Leave the scope. The cached ASTs are released when the outermost scope is closed.
+     */
+    public void close() {
+        if (--depth > 0)
+            return;
+        asts.clear();
+        if (current.get() == this)
+            current.remove();
+    }
+
+    /**
+     * Obtain the AST of a compilation unit.
+     *
+     * @return The AST, or null if the compilation unit could not be parsed
+     */
+    public static CompilationUnit getAST(ICompilationUnit unit) {
+        return getASTs(Collections.singletonList(unit)).get(unit);
+    }
+
+    /**
+     * Obtain the ASTs of compilation units. The compilation units which are not cached are parsed in one batch per
+     * Java project.
+     *
+     * @return The ASTs keyed on compilation unit; compilation units which could not be parsed are missing
+     */
+    public static Map<ICompilationUnit,CompilationUnit> getASTs(Collection<ICompilationUnit> units) {
+        ASTCache cache = current.get();
+        Map<ICompilationUnit,CompilationUnit> result = new LinkedHashMap<ICompilationUnit,CompilationUnit>();
+        Map<IJavaProject,List<ICompilationUnit>> missing = new LinkedHashMap<IJavaProject,List<ICompilationUnit>>();
+        for (ICompilationUnit unit : units) {
+            if (result.containsKey(unit))
+                continue;
+            Entry entry = cache != null ? cache.asts.get(unit.getHandleIdentifier()) : null;
+            if (entry != null && entry.stamp == stamp(unit)) {
+                result.put(unit, entry.ast);
+                continue;
+            }
+            // createASTs requires the compilation units of one batch to be in the same project
+            List<ICompilationUnit> list = missing.get(unit.getJavaProject());
+            if (list == null) {
+                list = new ArrayList<ICompilationUnit>();
+                missing.put(unit.getJavaProject(), list);
+            }
+            if (!list.contains(unit))
+                list.add(unit);
+        }
+
+        for (List<ICompilationUnit> batch : missing.values()) {
+            Map<ICompilationUnit,CompilationUnit> parsed = parse(batch);
+            result.putAll(parsed);
+            if (cache != null) {
+                for (Map.Entry<ICompilationUnit,CompilationUnit> entry : parsed.entrySet()) {
+                    ICompilationUnit unit = entry.getKey();
+                    cache.asts.put(unit.getHandleIdentifier(), new Entry(stamp(unit), entry.getValue()));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Map<ICompilationUnit,CompilationUnit> parse(List<ICompilationUnit> units) {
+        final Map<ICompilationUnit,CompilationUnit> parsed = new HashMap<ICompilationUnit,CompilationUnit>();
+        ASTParser parser = ASTParser.newParser(AST.JLS8);
+        parser.setKind(ASTParser.K_COMPILATION_UNIT);
+        parser.setResolveBindings(true);
+        parser.setProject(units.get(0).getJavaProject());
+        parser.createASTs(units.toArray(new ICompilationUnit[units.size()]), new String[0], new ASTRequestor() {
+            @Override
+            public void acceptAST(ICompilationUnit source, CompilationUnit ast) {
+                parsed.put(source, ast);
+            }
+        }, null);
+        return parsed;
+    }
+
+    private static long stamp(ICompilationUnit unit) {
+        IResource resource = unit.getResource();
+        return resource != null ? resource.getModificationStamp() : IResource.NULL_STAMP;
+    }
+}
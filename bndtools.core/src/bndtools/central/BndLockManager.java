@@ -0,0 +1,128 @@
+package bndtools.central;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+
+import aQute.bnd.build.Project;
+
+/**
+ * Manages the locks used to serialize access to bnd code which is not thread safe.
+ * <p>
+ * There are four levels of locking:
+ * <ul>
+ * <li>A shared workspace lock which is held by read-only queries of the workspace, such as listing repositories.</li>
+ * <li>A per-project lock, which is held together with the shared workspace lock, for operations on a single project
+ * such as building or calculating its classpath. Operations on different projects can run in parallel.</li>
+ * <li>A workspace mutex, which is held together with the shared workspace lock, for the steps of a project operation
+ * which read or lazily initialize state of the bnd {@code Workspace}: preparing a project, which resolves its build path
+ * through the repositories and the other projects, and calculating its dependencies. The bnd {@code Workspace} is not
+ * thread safe, so these steps are serialized with each other.</li>
+ * <li>An exclusive workspace lock for operations which mutate the workspace, such as changes to cnf.</li>
+ * </ul>
+ * Under the shared workspace lock the workspace is not refreshed or cleared, so the state of the {@code Workspace}
+ * initialized under the workspace mutex can be read in parallel: building a project which has been prepared only reads
+ * it. The exclusive lock cannot be obtained while holding the shared lock, since the shared lock cannot be upgraded.
+ */
+final class BndLockManager {
+    private static final int LOCK_ATTEMPTS = 60;
+
+    private final ReentrantReadWriteLock workspaceLock = new ReentrantReadWriteLock();
+    private final ReentrantLock workspaceMutex = new ReentrantLock();
+    private final ConcurrentMap<String,ReentrantLock> projectLocks = new ConcurrentHashMap<String,ReentrantLock>();
+
+    /**
+     * Execute the callable while holding the exclusive workspace lock.
+     *
+     * @throws IllegalStateException
+     *             If the current thread holds the shared workspace lock, that is the call is nested in a project call,
+     *             a workspace call or a read call.
+     */
+    <V> V exclusiveCall(Callable<V> callable, IProgressMonitor monitor) throws Exception {
+        if (workspaceLock.getReadHoldCount() > 0 && !workspaceLock.isWriteLockedByCurrentThread()) {
+            // A read lock cannot be upgraded to a write lock; waiting would only wait for ourselves
+            throw new IllegalStateException(
+                    "Central.bndCall(Callable) cannot be nested in Central.bndCall(Project, ...), Central.bndWorkspaceCall or Central.bndReadCall: the shared bnd workspace lock cannot be upgraded to the exclusive lock");
+        }
+        return call(workspaceLock.writeLock(), callable, monitor);
+    }
+
+    /**
+     * Execute the callable while holding the shared workspace lock.
+     */
+    <V> V sharedCall(Callable<V> callable, IProgressMonitor monitor) throws Exception {
+        return call(workspaceLock.readLock(), callable, monitor);
+    }
+
+    /**
+     * Execute the callable while holding the shared workspace lock and the lock of the specified project.
+     */
+    <V> V projectCall(Project project, final Callable<V> callable, final IProgressMonitor monitor) throws Exception {
+        final Lock projectLock = getProjectLock(project);
+        return sharedCall(new Callable<V>() {
+            @Override
+            public V call() throws Exception {
+                return BndLockManager.call(projectLock, callable, monitor);
+            }
+        }, monitor);
+    }
+
+    /**
+     * Execute the callable while holding the shared workspace lock and the workspace mutex.
+     */
+    <V> V workspaceCall(final Callable<V> callable, final IProgressMonitor monitor) throws Exception {
+        return sharedCall(new Callable<V>() {
+            @Override
+            public V call() throws Exception {
+                return BndLockManager.call(workspaceMutex, callable, monitor);
+            }
+        }, monitor);
+    }
+
+    private ReentrantLock getProjectLock(Project project) {
+        String name = project.getName();
+        ReentrantLock lock = projectLocks.get(name);
+        if (lock == null) {
+            ReentrantLock newLock = new ReentrantLock();
+            lock = projectLocks.putIfAbsent(name, newLock);
+            if (lock == null) {
+                lock = newLock;
+            }
+        }
+        return lock;
+    }
+
+    private static <V> V call(Lock lock, Callable<V> callable, IProgressMonitor monitor) throws Exception {
+        boolean interrupted = Thread.interrupted();
+        try {
+            boolean locked = false;
+            for (int i = 0; !locked && (i < LOCK_ATTEMPTS) && !monitor.isCanceled(); i++) {
+                try {
+                    locked = lock.tryLock(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    throw e;
+                }
+            }
+            if (!locked) {
+                throw new TimeoutException("Unable to acquire bnd lock");
+            }
+            try {
+                return callable.call();
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
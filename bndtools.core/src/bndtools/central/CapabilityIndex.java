@@ -0,0 +1,254 @@
+package bndtools.central;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.osgi.resource.Capability;
+import org.osgi.resource.Namespace;
+import org.osgi.resource.Requirement;
+import org.osgi.resource.Resource;
+
+import aQute.lib.filter.Filter;
+
+/**
+ * An index of capabilities keyed on namespace and on the primary attribute of the namespace, that is the attribute with
+ * the same name as the namespace such as {@code osgi.wiring.package} and {@code osgi.identity}.
+ * <p>
+ * Requirements whose filter selects a single value of the primary attribute are answered with a hash lookup. Only
+ * primary attributes of type {@code String} are hashed, since a filter compares typed values such as versions, numbers
+ * and lists by their type rather than by their string form. All other requirements, and all requirements of a namespace
+ * with a typed primary attribute, are matched against the capabilities of their namespace. Parsed filters are kept in
+ * an LRU cache shared by all indexes, so the filters of requirements that are matched repeatedly are only parsed once.
+ * <p>
+ * This class is not thread safe; the caller must synchronize access.
+ */
+public class CapabilityIndex {
+    private static final Pattern AND = Pattern.compile("\\(\\s*&");
+    private static final int MAX_FILTERS = 1000;
+
+    private static final Map<String,Filter> filters = new LinkedHashMap<String,Filter>(64, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String,Filter> eldest) {
+            return size() > MAX_FILTERS;
+        }
+    };
+    private static final Map<String,Pattern> primaryPatterns = new ConcurrentHashMap<String,Pattern>();
+
+    private final Map<String,Capabilities> byNamespace = new HashMap<String,Capabilities>();
+    private final Map<String,Map<Object,Capabilities>> byPrimary = new HashMap<String,Map<Object,Capabilities>>();
+    // capabilities with a primary attribute which is not a String, keyed on namespace
+    private final Map<String,Capabilities> unhashed = new HashMap<String,Capabilities>();
+
+    public void addResource(Resource resource) {
+        for (Capability cap : resource.getCapabilities(null)) {
+            addCapability(cap);
+        }
+    }
+
+    public void addCapability(Capability cap) {
+        String namespace = cap.getNamespace();
+        Capabilities caps = byNamespace.get(namespace);
+        if (caps == null) {
+            caps = new Capabilities();
+            byNamespace.put(namespace, caps);
+        }
+        caps.add(cap);
+
+        Object primary = cap.getAttributes().get(namespace);
+        if (primary == null)
+            return;
+        if (primary instanceof String) {
+            Map<Object,Capabilities> values = byPrimary.get(namespace);
+            if (values == null) {
+                values = new HashMap<Object,Capabilities>();
+                byPrimary.put(namespace, values);
+            }
+            add(values, primary, cap);
+        } else {
+            add(unhashed, namespace, cap);
+        }
+    }
+
+    private static <K> void add(Map<K,Capabilities> map, K key, Capability cap) {
+        Capabilities caps = map.get(key);
+        if (caps == null) {
+            caps = new Capabilities();
+            map.put(key, caps);
+        }
+        caps.add(cap);
+    }
+
+    public void removeResource(Resource resource) {
+        for (Capability cap : resource.getCapabilities(null)) {
+            removeCapability(cap);
+        }
+    }
+
+    public void removeCapability(Capability cap) {
+        String namespace = cap.getNamespace();
+        Capabilities caps = byNamespace.get(namespace);
+        if (caps != null)
+            caps.remove(cap);
+
+        Object primary = cap.getAttributes().get(namespace);
+        if (primary == null)
+            return;
+        if (primary instanceof String) {
+            Map<Object,Capabilities> values = byPrimary.get(namespace);
+            if (values != null)
+                remove(values, primary, cap);
+        } else {
+            remove(unhashed, namespace, cap);
+        }
+    }
+
+    private static <K> void remove(Map<K,Capabilities> map, Object key, Capability cap) {
+        Capabilities caps = map.get(key);
+        if (caps != null) {
+            caps.remove(cap);
+            if (caps.isEmpty())
+                map.remove(key);
+        }
+    }
+
+    /**
+     * Return the capabilities matching the requirement.
+     */
+    public List<Capability> findProviders(Requirement requirement) throws Exception {
+        String namespace = requirement.getNamespace();
+        String filterStr = requirement.getDirectives().get(Namespace.REQUIREMENT_FILTER_DIRECTIVE);
+        if (filterStr == null) {
+            Capabilities caps = byNamespace.get(namespace);
+            return caps == null ? Collections.<Capability> emptyList() : new ArrayList<Capability>(caps);
+        }
+
+        Collection<Capability> candidates;
+        // a typed primary attribute may match a value with a different string form, so it is not looked up by value
+        String primary = unhashed.containsKey(namespace) ? null : primaryValue(namespace, filterStr);
+        if (primary != null) {
+            Map<Object,Capabilities> values = byPrimary.get(namespace);
+            candidates = values == null ? null : values.get(primary);
+        } else {
+            candidates = byNamespace.get(namespace);
+        }
+        if (candidates == null)
+            return Collections.emptyList();
+
+        Filter filter = getFilter(filterStr);
+        List<Capability> matches = new ArrayList<Capability>();
+        for (Capability cap : candidates) {
+            if (filter.matchMap(cap.getAttributes()))
+                matches.add(cap);
+        }
+        return matches;
+    }
+
+    /*
+     * The primary value can only be used if the filter requires it, i.e. the
+     * filter is an equality comparison of the primary attribute or an and
+     * with such a comparison as a direct operand.
+     */
+    static String primaryValue(String namespace, String filterStr) {
+        String filter = filterStr.trim();
+        Pattern pattern = primaryPatterns.get(namespace);
+        if (pattern == null) {
+            pattern = Pattern.compile("\\(\\s*" + Pattern.quote(namespace) + "\\s*=([^*()\\\\]*)\\)");
+            primaryPatterns.put(namespace, pattern);
+        }
+        boolean and = AND.matcher(filter).lookingAt();
+        Matcher m = pattern.matcher(filter);
+        while (m.find()) {
+            int depth = depth(filter, m.start());
+            if ((depth == 0 && m.start() == 0 && m.end() == filter.length()) || (depth == 1 && and))
+                return m.group(1).trim();
+        }
+        return null;
+    }
+
+    private static int depth(String filter, int end) {
+        int depth = 0;
+        for (int i = 0; i < end; i++) {
+            char c = filter.charAt(i);
+            if (c == '\\')
+                i++;
+            else if (c == '(')
+                depth++;
+            else if (c == ')')
+                depth--;
+        }
+        return depth;
+    }
+
+    /*
+     * Capabilities in the order they were added. They are kept by identity so
+     * removing a capability takes constant time.
+     */
+    private static final class Capabilities extends AbstractCollection<Capability> {
+        private final Map<Identity,Capability> caps = new LinkedHashMap<Identity,Capability>();
+
+        Capabilities() {}
+
+        @Override
+        public boolean add(Capability cap) {
+            return caps.put(new Identity(cap), cap) == null;
+        }
+
+        @Override
+        public boolean remove(Object cap) {
+            return caps.remove(new Identity(cap)) != null;
+        }
+
+        @Override
+        public Iterator<Capability> iterator() {
+            return caps.values().iterator();
+        }
+
+        @Override
+        public int size() {
+            return caps.size();
+        }
+    }
+
+    private static final class Identity {
+        private final Object object;
+
+        Identity(Object object) {
+            this.object = object;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(object);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Identity && ((Identity) obj).object == object;
+        }
+    }
+
+    private static Filter getFilter(String filterStr) throws Exception {
+        synchronized (filters) {
+            Filter filter = filters.get(filterStr);
+            if (filter != null)
+                return filter;
+        }
+        Filter filter = new Filter(filterStr);
+        synchronized (filters) {
+            filters.put(filterStr, filter);
+        }
+        return filter;
+    }
+}
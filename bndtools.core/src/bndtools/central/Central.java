@@ -7,10 +7,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.bndtools.api.BndtoolsConstants;
 import org.bndtools.api.ILogger;
@@ -68,6 +67,7 @@ public class Central implements IStartupParticipant {
     private static Auxiliary auxiliary;
 
     static final AtomicBoolean indexValid = new AtomicBoolean(false);
+    private static final AtomicLong repositoryGeneration = new AtomicLong();
 
     private final BundleContext bundleContext;
     private final Map<IJavaProject,Project> javaProjectToModel = new HashMap<IJavaProject,Project>();
@@ -112,6 +112,9 @@ public class Central implements IStartupParticipant {
     public void stop() {
         repoListenerTracker.close();
 
+        if (r5Repository != null)
+            r5Repository.save();
+
         instance = null;
 
         Workspace ws = workspace;
@@ -476,6 +479,7 @@ public class Central implements IStartupParticipant {
         //
 
         if (changed) {
+            repositoriesChanged();
             try {
 
                 for (File file : refreshedFiles) {
@@ -498,6 +502,7 @@ public class Central implements IStartupParticipant {
 
     public static void refreshPlugin(Refreshable plugin) throws Exception {
         if (plugin.refresh()) {
+            repositoriesChanged();
             refreshFile(plugin.getRoot());
             for (Project p : Central.getWorkspace().getAllProjects()) {
                 p.setChanged();
@@ -534,6 +539,18 @@ public class Central implements IStartupParticipant {
         repositoriesViewRefresher.close();
     }
 
+    /**
+     * Return a number which changes whenever the content of a repository may have changed, so results calculated
+     * from the repositories can be reused as long as it stays the same.
+     */
+    public static long getRepositoryGeneration() {
+        return repositoryGeneration.get();
+    }
+
+    static void repositoriesChanged() {
+        repositoryGeneration.incrementAndGet();
+    }
+
     public static void invalidateIndex() {
         indexValid.set(false);
     }
@@ -567,20 +584,25 @@ public class Central implements IStartupParticipant {
     }
 
     /**
-     * Reentrant lock for serializing access to bnd code.
+     * Locks for serializing access to bnd code.
      */
-    private static final ReentrantLock bndLock = new ReentrantLock();
+    private static final BndLockManager bndLocks = new BndLockManager();
 
     /**
-     * Used to serialize access to bnd code which is not thread safe.
+     * Used to serialize access to bnd code which is not thread safe. The callable is executed while holding the
+     * exclusive workspace lock, so it should only be used for operations which mutate the workspace. It must not be
+     * called from code running in {@link #bndCall(Project, Callable, IProgressMonitor)},
+     * {@link #bndWorkspaceCall(Callable, IProgressMonitor)} or {@link #bndReadCall(Callable, IProgressMonitor)}.
      *
      * @param callable
-     *            The code to execute while holding the central lock.
+     *            The code to execute while holding the exclusive workspace lock.
      * @return The result of the specified callable.
      * @throws InterruptedException
      *             If the thread is interrupted while waiting for the lock.
      * @throws TimeoutException
      *             If the lock was not obtained within the timeout period.
+     * @throws IllegalStateException
+     *             If the current thread holds the shared workspace lock.
      * @throws Exception
      *             If the callable throws an exception.
      */
@@ -589,10 +611,13 @@ public class Central implements IStartupParticipant {
     }
 
     /**
-     * Used to serialize access to bnd code which is not thread safe.
+     * Used to serialize access to bnd code which is not thread safe. The callable is executed while holding the
+     * exclusive workspace lock, so it should only be used for operations which mutate the workspace. It must not be
+     * called from code running in {@link #bndCall(Project, Callable, IProgressMonitor)},
+     * {@link #bndWorkspaceCall(Callable, IProgressMonitor)} or {@link #bndReadCall(Callable, IProgressMonitor)}.
      *
      * @param callable
-     *            The code to execute while holding the central lock.
+     *            The code to execute while holding the exclusive workspace lock.
      * @param monitor
      *            If the monitor is cancelled, a TimeoutException will be thrown.
      * @return The result of the specified callable.
@@ -601,34 +626,80 @@ public class Central implements IStartupParticipant {
      * @throws TimeoutException
      *             If the lock was not obtained within the timeout period or the specified monitor is cancelled while
      *             waiting to obtain the lock.
+     * @throws IllegalStateException
+     *             If the current thread holds the shared workspace lock.
      * @throws Exception
      *             If the callable throws an exception.
      */
     public static <V> V bndCall(Callable<V> callable, IProgressMonitor monitor) throws Exception {
-        boolean interrupted = Thread.interrupted();
-        try {
-            boolean locked = false;
-            for (int i = 0; !locked && (i < 60) && !monitor.isCanceled(); i++) {
-                try {
-                    locked = bndLock.tryLock(1, TimeUnit.SECONDS);
-                } catch (InterruptedException e) {
-                    interrupted = true;
-                    throw e;
-                }
-            }
-            if (!locked) {
-                throw new TimeoutException("Unable to acquire bndLock");
-            }
-            try {
-                return callable.call();
-            } finally {
-                bndLock.unlock();
-            }
-        } finally {
-            if (interrupted) {
-                Thread.currentThread().interrupt();
-            }
-        }
+        return bndLocks.exclusiveCall(callable, monitor);
+    }
+
+    /**
+     * Used to serialize access to bnd code for a single project. The callable is executed while holding the shared
+     * workspace lock and the lock for the specified project, so calls for different projects may run in parallel.
+     *
+     * @param project
+     *            The project the callable operates on.
+     * @param callable
+     *            The code to execute while holding the project lock.
+     * @param monitor
+     *            If the monitor is cancelled, a TimeoutException will be thrown.
+     * @return The result of the specified callable.
+     * @throws InterruptedException
+     *             If the thread is interrupted while waiting for the lock.
+     * @throws TimeoutException
+     *             If the lock was not obtained within the timeout period or the specified monitor is cancelled while
+     *             waiting to obtain the lock.
+     * @throws Exception
+     *             If the callable throws an exception.
+     */
+    public static <V> V bndCall(Project project, Callable<V> callable, IProgressMonitor monitor) throws Exception {
+        return bndLocks.projectCall(project, callable, monitor);
+    }
+
+    /**
+     * Used for the steps of a project operation which read or initialize the state of the bnd workspace, such as
+     * preparing a project or calculating its dependencies. The bnd workspace is not thread safe, so the callable is
+     * executed while holding the shared workspace lock and the workspace mutex, which serializes these steps across
+     * projects.
+     *
+     * @param callable
+     *            The code to execute while holding the workspace mutex.
+     * @param monitor
+     *            If the monitor is cancelled, a TimeoutException will be thrown.
+     * @return The result of the specified callable.
+     * @throws InterruptedException
+     *             If the thread is interrupted while waiting for the lock.
+     * @throws TimeoutException
+     *             If the lock was not obtained within the timeout period or the specified monitor is cancelled while
+     *             waiting to obtain the lock.
+     * @throws Exception
+     *             If the callable throws an exception.
+     */
+    public static <V> V bndWorkspaceCall(Callable<V> callable, IProgressMonitor monitor) throws Exception {
+        return bndLocks.workspaceCall(callable, monitor);
+    }
+
+    /**
+     * Used for read-only queries of bnd code. The callable is executed while holding the shared workspace lock, so
+     * it may run in parallel with other read-only queries and project operations.
+     *
+     * @param callable
+     *            The code to execute while holding the shared workspace lock.
+     * @param monitor
+     *            If the monitor is cancelled, a TimeoutException will be thrown.
+     * @return The result of the specified callable.
+     * @throws InterruptedException
+     *             If the thread is interrupted while waiting for the lock.
+     * @throws TimeoutException
+     *             If the lock was not obtained within the timeout period or the specified monitor is cancelled while
+     *             waiting to obtain the lock.
+     * @throws Exception
+     *             If the callable throws an exception.
+     */
+    public static <V> V bndReadCall(Callable<V> callable, IProgressMonitor monitor) throws Exception {
+        return bndLocks.sharedCall(callable, monitor);
     }
 
     /**
@@ -674,4 +745,18 @@ public class Central implements IStartupParticipant {
     public static void setRepositories(TreeViewer viewer, RefreshModel model) {
         repositoriesViewRefresher.setRepositories(viewer, model);
     }
+
+    /**
+     * Return whether a repository is being loaded for the first time by the repositories viewers.
+     */
+    public static boolean isRepositoryLoading(RepositoryPlugin repo) {
+        return repositoriesViewRefresher.isLoading(repo);
+    }
+
+    /**
+     * Wait until a repository which is being loaded for the first time by the repositories viewers is loaded.
+     */
+    public static void awaitRepositoryLoaded(RepositoryPlugin repo) throws InterruptedException {
+        repositoriesViewRefresher.awaitLoaded(repo);
+    }
 }
@@ -2,16 +2,29 @@ package bndtools.central;
 
 import java.io.File;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.bndtools.api.ILogger;
+import org.bndtools.api.Logger;
 import org.bndtools.utils.swt.SWTConcurrencyUtil;
 import org.eclipse.core.resources.WorkspaceJob;
 import org.eclipse.core.runtime.CoreException;
@@ -34,7 +47,6 @@ import aQute.bnd.build.Workspace;
 import aQute.bnd.osgi.Jar;
 import aQute.bnd.service.RepositoryListenerPlugin;
 import aQute.bnd.service.RepositoryPlugin;
-import bndtools.Plugin;
 
 public class RepositoriesViewRefresher implements RepositoryListenerPlugin {
 
@@ -42,11 +54,27 @@ public class RepositoriesViewRefresher implements RepositoryListenerPlugin {
         List<RepositoryPlugin> getRepositories();
     }
 
-    // private static final ILogger logger = Logger.getLogger(RepositoriesViewRefresher.class);
+    private static final ILogger logger = Logger.getLogger(RepositoriesViewRefresher.class);
+    private static final long LOAD_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+    private static final int LOAD_THREADS = 4;
+    private static final long POLL_INTERVAL = 200;
+
     private boolean redo = false;
     private boolean busy = false;
     private final ServiceRegistration<RepositoryListenerPlugin> registration;
     private final Map<TreeViewer,RefreshModel> viewers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<RepositoryPlugin,LoadTask> loading = new ConcurrentHashMap<>();
+    private final Set<RepositoryPlugin> loaded = Collections.newSetFromMap(new ConcurrentHashMap<RepositoryPlugin,Boolean>());
+    private final ExecutorService loader = Executors.newFixedThreadPool(LOAD_THREADS, new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "Repository loader " + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    });
 
     RepositoriesViewRefresher() {
         ServiceRegistration<RepositoryListenerPlugin> reg = null;
@@ -97,9 +125,12 @@ public class RepositoriesViewRefresher implements RepositoryListenerPlugin {
                     // get repositories first, then do UI thread work
 
                     final Map<Entry<TreeViewer,RefreshModel>,List<RepositoryPlugin>> entryRepos = new HashMap<>();
+                    final Map<TreeViewer,Map<RepositoryPlugin,Object[]>> entryChildren = new HashMap<>();
 
                     for (Map.Entry<TreeViewer,RefreshModel> entry : viewers.entrySet()) {
-                        entryRepos.put(entry, entry.getValue().getRepositories());
+                        List<RepositoryPlugin> repositories = entry.getValue().getRepositories();
+                        entryRepos.put(entry, repositories);
+                        entryChildren.put(entry.getKey(), RepositoryTreeUpdater.snapshot(entry.getKey(), target != null ? repos : repositories));
                     }
 
                     //
@@ -115,12 +146,19 @@ public class RepositoriesViewRefresher implements RepositoryListenerPlugin {
                             }
 
                             for (Map.Entry<TreeViewer,RefreshModel> entry : viewers.entrySet()) {
+                                TreeViewer viewer = entry.getKey();
+                                if (viewer.getControl().isDisposed())
+                                    continue;
+
+                                List<RepositoryPlugin> repositories = entryRepos.get(entry);
+                                if (RepositoryTreeUpdater.update(viewer, repositories, entryChildren.get(viewer)))
+                                    continue;
 
-                                TreePath[] expandedTreePaths = entry.getKey().getExpandedTreePaths();
+                                TreePath[] expandedTreePaths = viewer.getExpandedTreePaths();
 
-                                entry.getKey().setInput(entryRepos.get(entry));
+                                viewer.setInput(repositories);
                                 if (expandedTreePaths != null && expandedTreePaths.length > 0)
-                                    entry.getKey().setExpandedTreePaths(expandedTreePaths);
+                                    viewer.setExpandedTreePaths(expandedTreePaths);
                             }
                             synchronized (RepositoriesViewRefresher.this) {
                                 busy = false;
@@ -139,35 +177,154 @@ public class RepositoriesViewRefresher implements RepositoryListenerPlugin {
         }.schedule(1000);
     }
 
+    /**
+     * Load the repositories in parallel and wait for them to be loaded. Each repository is published to the viewers as
+     * soon as it is loaded. A repository that takes longer than {@link #LOAD_TIMEOUT} from the start of its load is no
+     * longer waited for; it is published when it eventually completes.
+     */
     private IStatus ensureLoaded(IProgressMonitor monitor, Collection<RepositoryPlugin> repos) {
-        int n = 0;
-        try {
-            final RepositoryPlugin workspaceRepo = Central.getWorkspaceRepository();
-            for (RepositoryPlugin repo : repos) {
-                if (monitor.isCanceled()) {
+        Map<RepositoryPlugin,LoadTask> tasks = new LinkedHashMap<>();
+        for (RepositoryPlugin repo : repos) {
+            tasks.put(repo, load(repo));
+        }
+
+        monitor.beginTask("Loading repositories", tasks.size());
+        for (Map.Entry<RepositoryPlugin,LoadTask> entry : tasks.entrySet()) {
+            if (monitor.isCanceled()) {
+                return Status.CANCEL_STATUS;
+            }
+            RepositoryPlugin repo = entry.getKey();
+            monitor.subTask(repo.getName());
+            try {
+                if (!await(entry.getValue(), monitor))
                     return Status.CANCEL_STATUS;
-                }
-                monitor.beginTask(repo.getName(), n++);
-                if (repo != workspaceRepo) {
-                    repo.list(null); // looks silly but is here to incur any download time
-                    continue;
-                }
-                // We must safely call bnd to list workspace repo
+            } catch (TimeoutException e) {
+                logger.logInfo("Repository " + repo.getName() + " is still loading; it will be shown when it is loaded", null);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Status.CANCEL_STATUS;
+            } catch (ExecutionException e) {
+                logger.logError("Exception loading repository " + repo.getName(), e.getCause());
+            }
+            monitor.worked(1);
+        }
+        return Status.OK_STATUS;
+    }
+
+    /**
+     * Wait for a load until {@link #LOAD_TIMEOUT} after it started. A load which is still queued behind the loads of
+     * other repositories is waited for at most {@link #LOAD_TIMEOUT} from when the wait began.
+     *
+     * @return false if the monitor was cancelled.
+     */
+    private static boolean await(LoadTask task, IProgressMonitor monitor) throws InterruptedException, ExecutionException, TimeoutException {
+        long waiting = System.currentTimeMillis();
+        while (!monitor.isCanceled()) {
+            long started = task.started;
+            long remaining = (started != 0L ? started : waiting) + LOAD_TIMEOUT - System.currentTimeMillis();
+            if (remaining <= 0L)
+                throw new TimeoutException();
+            try {
+                task.get(Math.min(remaining, POLL_INTERVAL), TimeUnit.MILLISECONDS);
+                return true;
+            } catch (TimeoutException e) {
+                // check for cancellation and whether the load has started
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Start loading a repository, unless it is already being loaded.
+     */
+    private LoadTask load(final RepositoryPlugin repo) {
+        LoadTask task = new LoadTask(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
                 try {
-                    Central.bndCall(new Callable<List<String>>() {
-                        @Override
-                        public List<String> call() throws Exception {
-                            return workspaceRepo.list(null);
-                        }
-                    }, monitor);
-                } catch (TimeoutException | InterruptedException e) {
-                    return new Status(Status.ERROR, Plugin.PLUGIN_ID, "Unable to acquire lock to refresh repository " + repo.getName(), e);
+                    final RepositoryPlugin workspaceRepo = Central.getWorkspaceRepository();
+                    if (repo != workspaceRepo) {
+                        repo.list(null); // looks silly but is here to incur any download time
+                    } else {
+                        // We must safely call bnd to list workspace repo
+                        Central.bndReadCall(new Callable<List<String>>() {
+                            @Override
+                            public List<String> call() throws Exception {
+                                return workspaceRepo.list(null);
+                            }
+                        }, new NullProgressMonitor());
+                    }
+                } finally {
+                    loading.remove(repo);
+                    boolean first = loaded.add(repo);
+                    if (first)
+                        publish(repo);
                 }
+                return null;
             }
-        } catch (Exception e) {
-            return new Status(Status.ERROR, Plugin.PLUGIN_ID, "Exception refreshing repositories", e);
+        });
+
+        LoadTask existing = loading.putIfAbsent(repo, task);
+        if (existing != null) {
+            return existing;
+        }
+        loader.execute(task);
+        return task;
+    }
+
+    /**
+     * The load of a repository, which records when it started running.
+     */
+    private static final class LoadTask extends FutureTask<Void> {
+        volatile long started;
+
+        LoadTask(Callable<Void> callable) {
+            super(callable);
+        }
+
+        @Override
+        public void run() {
+            started = System.currentTimeMillis();
+            super.run();
+        }
+    }
+
+    /**
+     * Show the contents of a repository that was loaded for the first time in place of the loading placeholder.
+     */
+    private void publish(final RepositoryPlugin repo) {
+        getDisplay().asyncExec(new Runnable() {
+            @Override
+            public void run() {
+                for (TreeViewer viewer : viewers.keySet()) {
+                    if (!viewer.getControl().isDisposed())
+                        viewer.refresh(repo);
+                }
+            }
+        });
+    }
+
+    /**
+     * Return whether a repository is being loaded for the first time. Its contents should not be requested until it
+     * is loaded.
+     */
+    public boolean isLoading(RepositoryPlugin repo) {
+        return loading.containsKey(repo) && !loaded.contains(repo);
+    }
+
+    /**
+     * Wait until a repository which is being loaded for the first time is loaded. Returns immediately if the
+     * repository is not being loaded.
+     */
+    public void awaitLoaded(RepositoryPlugin repo) throws InterruptedException {
+        Future<Void> future = loading.get(repo);
+        if (future == null)
+            return;
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            // reported by ensureLoaded
         }
-        return Status.OK_STATUS;
     }
 
     public void addViewer(final TreeViewer viewer, final RefreshModel model) {
@@ -179,6 +336,9 @@ public class RepositoriesViewRefresher implements RepositoryListenerPlugin {
                     @Override
                     protected IStatus run(IProgressMonitor monitor) {
                         final List<RepositoryPlugin> repositories = model.getRepositories();
+                        for (RepositoryPlugin repo : repositories) {
+                            load(repo);
+                        }
                         Display.getDefault().asyncExec(new Runnable() {
                             @Override
                             public void run() {
@@ -220,6 +380,7 @@ public class RepositoriesViewRefresher implements RepositoryListenerPlugin {
     public void close() {
         if (registration != null)
             registration.unregister();
+        loader.shutdownNow();
     }
 
     public static Display getDisplay() {
@@ -16,6 +16,7 @@ public class RepositoryListenerPluginTracker extends ServiceTracker<RepositoryLi
     }
 
     public void bundleAdded(RepositoryPlugin repository, Jar jar, File file) {
+        Central.repositoriesChanged();
         Object[] snapshot = getServices();
         if (snapshot != null)
             for (Object l : snapshot) {
@@ -24,6 +25,7 @@ public class RepositoryListenerPluginTracker extends ServiceTracker<RepositoryLi
     }
 
     public void bundleRemoved(RepositoryPlugin repository, Jar jar, File file) {
+        Central.repositoriesChanged();
         Object[] snapshot = getServices();
         if (snapshot != null)
             for (Object l : snapshot) {
@@ -32,6 +34,7 @@ public class RepositoryListenerPluginTracker extends ServiceTracker<RepositoryLi
     }
 
     public void repositoryRefreshed(RepositoryPlugin repository) {
+        Central.repositoriesChanged();
         Object[] snapshot = getServices();
         if (snapshot != null)
             for (Object l : snapshot) {
@@ -40,6 +43,7 @@ public class RepositoryListenerPluginTracker extends ServiceTracker<RepositoryLi
     }
 
     public void repositoriesRefreshed() {
+        Central.repositoriesChanged();
         Object[] snapshot = getServices();
         if (snapshot != null)
             for (Object l : snapshot) {
@@ -0,0 +1,127 @@
+package bndtools.central;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jface.viewers.IContentProvider;
+import org.eclipse.jface.viewers.TreeViewer;
+import org.eclipse.swt.widgets.TreeItem;
+import org.eclipse.swt.widgets.Widget;
+
+import aQute.bnd.service.RepositoryPlugin;
+import bndtools.model.repo.LoadingContentElement;
+import bndtools.model.repo.RepositoryTreeContentProvider;
+
+/**
+ * Updates a repositories tree viewer with targeted add, remove and refresh calls instead of setting a new input.
+ * <p>
+ * The new children of the repositories are calculated in the background with the viewer's content provider. On the UI
+ * thread they are compared with the children the viewer currently shows for each repository, so the cost of an update
+ * depends on what changed and on the nodes the user has expanded rather than on the size of the repositories.
+ * Repositories whose children were never shown are left alone; their children are fetched when they are expanded.
+ */
+class RepositoryTreeUpdater {
+
+    private RepositoryTreeUpdater() {}
+
+    /**
+     * Calculate the children of the repositories. This can be called from any thread.
+     *
+     * @param viewer
+     *            The viewer.
+     * @param repos
+     *            The repositories to calculate the children for.
+     * @return The children by repository or {@code null} if the viewer cannot be updated incrementally.
+     */
+    static Map<RepositoryPlugin,Object[]> snapshot(TreeViewer viewer, Collection<RepositoryPlugin> repos) {
+        IContentProvider cp = viewer.getContentProvider();
+        if (!(cp instanceof RepositoryTreeContentProvider))
+            return null;
+        RepositoryTreeContentProvider contentProvider = (RepositoryTreeContentProvider) cp;
+        if (!contentProvider.isShowRepos())
+            return null;
+
+        Map<RepositoryPlugin,Object[]> children = new LinkedHashMap<RepositoryPlugin,Object[]>();
+        for (RepositoryPlugin repo : repos) {
+            contentProvider.invalidateVersions(repo);
+            Object[] result = contentProvider.getChildren(repo);
+            children.put(repo, result == null ? new Object[0] : result);
+        }
+        return children;
+    }
+
+    /**
+     * Update the viewer. This must be called from the UI thread.
+     *
+     * @param viewer
+     *            The viewer.
+     * @param input
+     *            The new input of the viewer.
+     * @param children
+     *            The children calculated by {@link #snapshot(TreeViewer, Collection)}. Repositories which are not in
+     *            the map are not updated.
+     * @return {@code false} if the viewer could not be updated incrementally and the input must be set instead.
+     */
+    static boolean update(TreeViewer viewer, List<RepositoryPlugin> input, Map<RepositoryPlugin,Object[]> children) {
+        if (children == null || input == null || !input.equals(viewer.getInput()))
+            return false;
+
+        for (Map.Entry<RepositoryPlugin,Object[]> entry : children.entrySet()) {
+            update(viewer, entry.getKey(), entry.getValue());
+        }
+        return true;
+    }
+
+    private static void update(TreeViewer viewer, RepositoryPlugin repo, Object[] newChildren) {
+        Widget widget = viewer.testFindItem(repo);
+        if (!(widget instanceof TreeItem))
+            return; // repository is not shown
+
+        TreeItem[] items = ((TreeItem) widget).getItems();
+        if (items.length > 0 && items[0].getData() == null)
+            return; // children have never been shown
+
+        List<Object> oldChildren = new ArrayList<Object>(items.length);
+        for (TreeItem item : items) {
+            oldChildren.add(item.getData());
+        }
+        if (containsPlaceholder(oldChildren) || containsPlaceholder(Arrays.asList(newChildren))) {
+            viewer.refresh(repo);
+            return;
+        }
+
+        Set<Object> newSet = new HashSet<Object>(Arrays.asList(newChildren));
+        List<Object> removed = new ArrayList<Object>();
+        for (Object child : oldChildren) {
+            if (!newSet.contains(child))
+                removed.add(child);
+        }
+        if (!removed.isEmpty())
+            viewer.remove(repo, removed.toArray());
+
+        Set<Object> oldSet = new HashSet<Object>(oldChildren);
+        for (int i = 0; i < newChildren.length; i++) {
+            Object child = newChildren[i];
+            if (!oldSet.contains(child)) {
+                viewer.insert(repo, child, i);
+            } else if (viewer.getExpandedState(child)) {
+                // the versions may have changed
+                viewer.refresh(child);
+            }
+        }
+    }
+
+    private static boolean containsPlaceholder(Collection<Object> children) {
+        for (Object child : children) {
+            if (child instanceof LoadingContentElement)
+                return true;
+        }
+        return false;
+    }
+}
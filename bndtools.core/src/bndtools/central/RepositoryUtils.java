@@ -7,6 +7,7 @@ import java.util.concurrent.Callable;
 
 import org.bndtools.api.ILogger;
 import org.bndtools.api.Logger;
+import org.eclipse.core.runtime.NullProgressMonitor;
 
 import aQute.bnd.build.Workspace;
 import aQute.bnd.service.RegistryPlugin;
@@ -27,7 +28,7 @@ public class RepositoryUtils {
 
     public static List<RepositoryPlugin> listRepositories(final Workspace localWorkspace, final boolean hideCache) {
         try {
-            return Central.bndCall(new Callable<List<RepositoryPlugin>>() {
+            return Central.bndReadCall(new Callable<List<RepositoryPlugin>>() {
                 @Override
                 public List<RepositoryPlugin> call() throws Exception {
                     List<RepositoryPlugin> plugins = localWorkspace.getPlugins(RepositoryPlugin.class);
@@ -53,7 +54,7 @@ public class RepositoryUtils {
 
                     return repos;
                 }
-            });
+            }, new NullProgressMonitor());
         } catch (Exception e) {
             logger.logError("Error loading repositories: " + e.getMessage(), e);
         }
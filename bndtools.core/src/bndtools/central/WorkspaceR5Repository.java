@@ -6,9 +6,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -27,19 +27,22 @@ import org.osgi.util.promise.Success;
 
 import aQute.bnd.build.Project;
 import aQute.bnd.build.Workspace;
-import aQute.bnd.deployer.repository.CapabilityIndex;
 import aQute.bnd.deployer.repository.api.IRepositoryContentProvider;
 import aQute.bnd.deployer.repository.api.IRepositoryIndexProcessor;
 import aQute.bnd.deployer.repository.api.Referral;
 import aQute.bnd.deployer.repository.providers.R5RepoContentProvider;
 import aQute.bnd.osgi.repository.BaseRepository;
 import aQute.lib.io.IO;
+import bndtools.Plugin;
 
 public class WorkspaceR5Repository extends BaseRepository {
 
     private static final String NAME = "Workspace";
+    private static final String STORE_FILENAME = "workspace.index";
 
-    private final Map<IProject,CapabilityIndex> projectMap = new HashMap<IProject,CapabilityIndex>();
+    private final Map<IProject,List<Resource>> projectMap = new HashMap<IProject,List<Resource>>();
+    private final Map<Resource,IProject> resourceMap = new HashMap<Resource,IProject>();
+    private final CapabilityIndex index = new CapabilityIndex();
     private final IRepositoryContentProvider contentProvider = new R5RepoContentProvider();
 
     private final ILogger logger = Logger.getLogger(WorkspaceR5Repository.class);
@@ -61,6 +64,7 @@ public class WorkspaceR5Repository extends BaseRepository {
     }
 
     void setupProjects() throws Exception {
+        Map<String,WorkspaceR5RepositoryStore.Entry> stored = getStore().load();
         IProject[] projects = ResourcesPlugin.getWorkspace().getRoot().getProjects();
         for (IProject project : projects) {
             Project model = Central.getProject(project);
@@ -69,13 +73,48 @@ public class WorkspaceR5Repository extends BaseRepository {
                 if (targetDir != null) {
                     File indexFile = new File(targetDir, ".index");
                     if (indexFile.isFile()) {
-                        loadProjectIndex(project, new FileInputStream(indexFile), project.getLocation().toFile().toURI());
+                        WorkspaceR5RepositoryStore.Entry entry = stored.get(project.getName());
+                        if (entry != null && entry.isValid(indexFile)) {
+                            setProjectResources(project, entry.resources);
+                        } else {
+                            loadProjectIndex(project, new FileInputStream(indexFile), project.getLocation().toFile().toURI());
+                        }
                     }
                 }
             }
         }
     }
 
+    /**
+     * Persist the resources of the workspace projects so they can be loaded without parsing the index files on the
+     * next startup.
+     */
+    void save() {
+        Map<String,WorkspaceR5RepositoryStore.Entry> entries = new HashMap<String,WorkspaceR5RepositoryStore.Entry>();
+        try {
+            synchronized (projectMap) {
+                for (Entry<IProject,List<Resource>> entry : projectMap.entrySet()) {
+                    IProject project = entry.getKey();
+                    if (!project.exists() || !project.isOpen())
+                        continue;
+                    Project model = Central.getProject(project);
+                    if (model == null)
+                        continue;
+                    File indexFile = new File(getTarget(model), ".index");
+                    if (indexFile.isFile())
+                        entries.put(project.getName(), new WorkspaceR5RepositoryStore.Entry(indexFile.lastModified(), indexFile.length(), entry.getValue()));
+                }
+            }
+            getStore().store(entries);
+        } catch (Exception e) {
+            logger.logError("Failed to store the workspace repository index", e);
+        }
+    }
+
+    private static WorkspaceR5RepositoryStore getStore() {
+        return new WorkspaceR5RepositoryStore(new File(Plugin.getDefault().getStateLocation().toFile(), STORE_FILENAME));
+    }
+
     // This is equivalent to Project.getTarget0(). It gets the target dir without a prepare,
     // which would initialise the plugins too early.
     private File getTarget(Project project) throws IOException {
@@ -90,57 +129,70 @@ public class WorkspaceR5Repository extends BaseRepository {
     }
 
     public void loadProjectIndex(final IProject project, InputStream index, URI baseUri) {
-        synchronized (projectMap) {
-            try {
-                cleanProject(project);
+        final List<Resource> resources = new ArrayList<Resource>();
+        try {
+            IRepositoryIndexProcessor processor = new IRepositoryIndexProcessor() {
+                @Override
+                public void processResource(Resource resource) {
+                    resources.add(resource);
+                }
 
-                IRepositoryIndexProcessor processor = new IRepositoryIndexProcessor() {
-                    @Override
-                    public void processResource(Resource resource) {
-                        addResource(project, resource);
-                    }
+                @Override
+                public void processReferral(URI parentUri, Referral referral, int maxDepth, int currentDepth) {
+                    // ignore: we don't create any referrals
+                }
+            };
+            contentProvider.parseIndex(index, baseUri, processor, logAdapter);
+            setProjectResources(project, resources);
+        } catch (Exception e) {
+            logger.logError(MessageFormat.format("Failed to process index file for bundles in project {0}.", project.getName()), e);
+        } finally {
+            IO.close(index);
+        }
+    }
 
-                    @Override
-                    public void processReferral(URI parentUri, Referral referral, int maxDepth, int currentDepth) {
-                        // ignore: we don't create any referrals
-                    }
-                };
-                contentProvider.parseIndex(index, baseUri, processor, logAdapter);
-            } catch (Exception e) {
-                logger.logError(MessageFormat.format("Failed to process index file for bundles in project {0}.", project.getName()), e);
-            } finally {
-                IO.close(index);
+    /**
+     * Replace the resources provided by a project.
+     */
+    public void setProjectResources(IProject project, List<Resource> resources) {
+        synchronized (projectMap) {
+            cleanProject(project);
+            for (Resource resource : resources) {
+                index.addResource(resource);
+                resourceMap.put(resource, project);
             }
+            projectMap.put(project, new ArrayList<Resource>(resources));
         }
+        Central.repositoriesChanged();
     }
 
     private void cleanProject(IProject project) {
-        CapabilityIndex index = projectMap.get(project);
-        if (index != null)
-            index.clear();
-    }
-
-    private void addResource(IProject project, Resource resource) {
-        CapabilityIndex index = projectMap.get(project);
-        if (index == null) {
-            index = new CapabilityIndex();
-            projectMap.put(project, index);
+        List<Resource> resources = projectMap.remove(project);
+        if (resources != null) {
+            for (Resource resource : resources) {
+                index.removeResource(resource);
+                resourceMap.remove(resource);
+            }
         }
-        index.addResource(resource);
     }
 
     @Override
     public Map<Requirement,Collection<Capability>> findProviders(Collection< ? extends Requirement> requirements) {
         Map<Requirement,Collection<Capability>> result = new HashMap<Requirement,Collection<Capability>>();
-        for (Requirement requirement : requirements) {
-            List<Capability> matches = new LinkedList<Capability>();
-            result.put(requirement, matches);
-
-            for (Entry<IProject,CapabilityIndex> entry : projectMap.entrySet()) {
-                IProject project = entry.getKey();
-                if (project.exists() && project.isOpen()) {
-                    CapabilityIndex capabilityIndex = entry.getValue();
-                    capabilityIndex.appendMatchingCapabilities(requirement, matches);
+        synchronized (projectMap) {
+            for (Requirement requirement : requirements) {
+                List<Capability> matches = new ArrayList<Capability>();
+                result.put(requirement, matches);
+
+                try {
+                    for (Capability capability : index.findProviders(requirement)) {
+                        IProject project = resourceMap.get(capability.getResource());
+                        if (project != null && project.exists() && project.isOpen()) {
+                            matches.add(capability);
+                        }
+                    }
+                } catch (Exception e) {
+                    logger.logError("Failed to find providers for requirement " + requirement, e);
                 }
             }
         }
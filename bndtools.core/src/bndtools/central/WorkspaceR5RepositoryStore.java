@@ -0,0 +1,233 @@
+package bndtools.central;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.osgi.framework.Version;
+import org.osgi.resource.Capability;
+import org.osgi.resource.Requirement;
+import org.osgi.resource.Resource;
+
+import aQute.bnd.osgi.resource.CapReqBuilder;
+import aQute.bnd.osgi.resource.ResourceBuilder;
+import aQute.lib.io.IO;
+
+/**
+ * Persists the resources of the workspace repository so they do not have to be parsed from the {@code .index} files
+ * of every project at startup.
+ * <p>
+ * For each project the store records the size and timestamp of the project's index file. Entries whose index file has
+ * since changed are ignored on load, so the store only needs to be written when the workbench shuts down.
+ */
+class WorkspaceR5RepositoryStore {
+    private static final int VERSION = 1;
+
+    private static final byte TYPE_STRING = 0;
+    private static final byte TYPE_VERSION = 1;
+    private static final byte TYPE_LONG = 2;
+    private static final byte TYPE_DOUBLE = 3;
+    private static final byte TYPE_LIST = 4;
+
+    static class Entry {
+        final long indexLastModified;
+        final long indexLength;
+        final List<Resource> resources;
+
+        Entry(long indexLastModified, long indexLength, List<Resource> resources) {
+            this.indexLastModified = indexLastModified;
+            this.indexLength = indexLength;
+            this.resources = resources;
+        }
+
+        boolean isValid(File indexFile) {
+            return indexFile.lastModified() == indexLastModified && indexFile.length() == indexLength;
+        }
+    }
+
+    private final File file;
+
+    WorkspaceR5RepositoryStore(File file) {
+        this.file = file;
+    }
+
+    Map<String,Entry> load() {
+        Map<String,Entry> entries = new HashMap<String,Entry>();
+        if (!file.isFile())
+            return entries;
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+            if (in.readInt() != VERSION)
+                return entries;
+            int projects = in.readInt();
+            for (int p = 0; p < projects; p++) {
+                String name = in.readUTF();
+                long lastModified = in.readLong();
+                long length = in.readLong();
+                int count = in.readInt();
+                List<Resource> resources = new ArrayList<Resource>(count);
+                for (int r = 0; r < count; r++) {
+                    resources.add(readResource(in));
+                }
+                entries.put(name, new Entry(lastModified, length, resources));
+            }
+        } catch (Exception e) {
+            // a corrupt store is just ignored; the index files are parsed instead
+            entries.clear();
+        } finally {
+            IO.close(in);
+        }
+        return entries;
+    }
+
+    void store(Map<String,Entry> entries) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+        try {
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            for (Map.Entry<String,Entry> entry : entries.entrySet()) {
+                Entry e = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeLong(e.indexLastModified);
+                out.writeLong(e.indexLength);
+                out.writeInt(e.resources.size());
+                for (Resource resource : e.resources) {
+                    writeResource(out, resource);
+                }
+            }
+        } catch (IOException e) {
+            IO.close(out);
+            IO.delete(file);
+            throw e;
+        } finally {
+            IO.close(out);
+        }
+    }
+
+    private static void writeResource(DataOutputStream out, Resource resource) throws IOException {
+        List<Capability> caps = resource.getCapabilities(null);
+        out.writeInt(caps.size());
+        for (Capability cap : caps) {
+            writeCapReq(out, cap.getNamespace(), cap.getAttributes(), cap.getDirectives());
+        }
+        List<Requirement> reqs = resource.getRequirements(null);
+        out.writeInt(reqs.size());
+        for (Requirement req : reqs) {
+            writeCapReq(out, req.getNamespace(), req.getAttributes(), req.getDirectives());
+        }
+    }
+
+    private static void writeCapReq(DataOutputStream out, String namespace, Map<String,Object> attributes, Map<String,String> directives) throws IOException {
+        out.writeUTF(namespace);
+        out.writeInt(attributes.size());
+        for (Map.Entry<String,Object> attr : attributes.entrySet()) {
+            out.writeUTF(attr.getKey());
+            writeValue(out, attr.getValue());
+        }
+        out.writeInt(directives.size());
+        for (Map.Entry<String,String> dir : directives.entrySet()) {
+            out.writeUTF(dir.getKey());
+            writeString(out, dir.getValue());
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value instanceof Version) {
+            out.writeByte(TYPE_VERSION);
+            out.writeUTF(value.toString());
+        } else if (value instanceof Long || value instanceof Integer) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong(((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Collection) {
+            Collection< ? > list = (Collection< ? >) value;
+            out.writeByte(TYPE_LIST);
+            out.writeInt(list.size());
+            for (Object element : list) {
+                writeValue(out, element);
+            }
+        } else {
+            out.writeByte(TYPE_STRING);
+            writeString(out, String.valueOf(value));
+        }
+    }
+
+    /*
+     * writeUTF is limited to 64k, which some directives such as uses can
+     * exceed.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static Resource readResource(DataInputStream in) throws Exception {
+        ResourceBuilder rb = new ResourceBuilder();
+        int caps = in.readInt();
+        for (int i = 0; i < caps; i++) {
+            rb.addCapability(readCapReq(in));
+        }
+        int reqs = in.readInt();
+        for (int i = 0; i < reqs; i++) {
+            rb.addRequirement(readCapReq(in));
+        }
+        return rb.build();
+    }
+
+    private static CapReqBuilder readCapReq(DataInputStream in) throws Exception {
+        CapReqBuilder builder = new CapReqBuilder(in.readUTF());
+        int attrs = in.readInt();
+        for (int i = 0; i < attrs; i++) {
+            builder.addAttribute(in.readUTF(), readValue(in));
+        }
+        int dirs = in.readInt();
+        for (int i = 0; i < dirs; i++) {
+            builder.addDirective(in.readUTF(), readString(in));
+        }
+        return builder;
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+        case TYPE_VERSION :
+            return Version.parseVersion(in.readUTF());
+        case TYPE_LONG :
+            return in.readLong();
+        case TYPE_DOUBLE :
+            return in.readDouble();
+        case TYPE_LIST :
+            int size = in.readInt();
+            List<Object> list = new ArrayList<Object>(size);
+            for (int i = 0; i < size; i++) {
+                list.add(readValue(in));
+            }
+            return list;
+        case TYPE_STRING :
+            return readString(in);
+        default :
+            throw new IOException("Unknown attribute type " + type);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+}
@@ -122,6 +122,7 @@ public class WorkspaceRepositoryChangeDetector implements Closeable, IResourceCh
                 event.getDelta().accept(rootFolderVisitor);
 
                 if (refresh.getAndSet(false)) {
+                    Central.repositoriesChanged();
                     Job job = new Job("Refresh Workspace Repository") {
                         @Override
                         protected IStatus run(IProgressMonitor monitor) {
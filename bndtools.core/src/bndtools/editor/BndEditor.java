@@ -44,6 +44,7 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.core.runtime.jobs.JobChangeAdapter;
 import org.eclipse.jface.dialogs.ErrorDialog;
 import org.eclipse.jface.dialogs.IMessageProvider;
@@ -84,6 +85,7 @@ import bndtools.Plugin;
 import bndtools.central.Central;
 import bndtools.editor.common.IPriority;
 import bndtools.editor.model.IDocumentWrapper;
+import bndtools.editor.model.IncrementalEditModel;
 import bndtools.editor.pages.BundleContentPage;
 import bndtools.editor.pages.BundleDescriptionPage;
 import bndtools.editor.pages.ProjectBuildPage;
@@ -112,7 +114,7 @@ public class BndEditor extends ExtendedFormEditor implements IResourceChangeList
     public static final String BNDRUN_PAGE = "__bndrun_page";
     public static final String TEST_SUITES_PAGE = "__test_suites_page";
 
-    private final BndEditModel model = new BndEditModel();
+    private final IncrementalEditModel model = new IncrementalEditModel();
 
     private final Map<String,IFormPageFactory> pageFactories = new LinkedHashMap<String,IFormPageFactory>();
 
@@ -276,6 +278,7 @@ public class BndEditor extends ExtendedFormEditor implements IResourceChangeList
 
         // Create resolver job and pre-validate
         final ResolveJob job = new ResolveJob(model);
+        job.setUseCache(true);
         IStatus validation = job.validateBeforeRun();
         if (!validation.isOK()) {
             String message = "Unable to run the resolver. NB.: the file will still be saved.";
@@ -493,16 +496,11 @@ public class BndEditor extends ExtendedFormEditor implements IResourceChangeList
         model.setProject(bndProject);
 
         // Load content into the edit model
-        Display.getDefault().asyncExec(new Runnable() {
+        IDocument document = sourcePage.getDocumentProvider().getDocument(getEditorInput());
+        loadEditModel(document, new Runnable() {
             @Override
             public void run() {
-                IDocument document = sourcePage.getDocumentProvider().getDocument(getEditorInput());
-                try {
-                    model.loadFrom(new IDocumentWrapper(document));
-                    model.setBndResource(inputFile);
-                } catch (IOException e) {
-                    logger.logError("Unable to load edit model", e);
-                }
+                model.setBndResource(inputFile);
 
                 for (int i = 0; i < getPageCount(); i++) {
                     Control control = getControl(i);
@@ -520,6 +518,44 @@ public class BndEditor extends ExtendedFormEditor implements IResourceChangeList
 
     }
 
+    /*
+     * Parse the document in the background and load it into the edit model on
+     * the UI thread, so only the parts showing changed properties refresh.
+     */
+    private void loadEditModel(final IDocument document, final Runnable onLoaded) {
+        Job job = new Job("Loading bnd edit model") {
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                final String text = document.get();
+                Map<String,String> parsed;
+                try {
+                    parsed = IncrementalEditModel.parse(text);
+                } catch (IOException e) {
+                    parsed = null; // parse again when loading
+                }
+                final Map<String,String> values = parsed;
+                Display.getDefault().asyncExec(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            IDocumentWrapper idoc = new IDocumentWrapper(document);
+                            if (values != null)
+                                model.loadFrom(idoc, text, values);
+                            else
+                                model.loadFrom(idoc);
+                        } catch (IOException e) {
+                            logger.logError("Unable to load edit model", e);
+                        }
+                        onLoaded.run();
+                    }
+                });
+                return Status.OK_STATUS;
+            }
+        };
+        job.setSystem(true);
+        job.schedule();
+    }
+
     private void initPages(IEditorSite site, IEditorInput input) throws PartInitException {
         // Initialise pages
         sourcePage = new BndSourceEditorPage(SOURCE_PAGE, this);
@@ -632,15 +668,10 @@ public class BndEditor extends ExtendedFormEditor implements IResourceChangeList
             if (!saving.get()) {
                 final IDocumentProvider docProvider = sourcePage.getDocumentProvider();
                 final IDocument document = docProvider.getDocument(getEditorInput());
-                SWTConcurrencyUtil.execForControl(getEditorSite().getShell(), true, new Runnable() {
+                loadEditModel(document, new Runnable() {
                     @Override
                     public void run() {
-                        try {
-                            model.loadFrom(new IDocumentWrapper(document));
-                            updateIncludedPages();
-                        } catch (IOException e) {
-                            logger.logError("Failed to reload document", e);
-                        }
+                        updateIncludedPages();
                     }
                 });
             }
@@ -1,57 +1,158 @@
 package bndtools.editor.completion;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeoutException;
 
+import org.bndtools.api.ILogger;
+import org.bndtools.api.Logger;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.text.*;
 import org.eclipse.jface.text.contentassist.*;
+import org.eclipse.swt.graphics.Point;
 
+import aQute.bnd.build.Workspace;
 import aQute.bnd.help.Syntax;
+import bndtools.central.Central;
 
 public class BndCompletionProcessor implements IContentAssistProcessor {
 
-    private static final Pattern PREFIX_PATTERN = Pattern.compile("^(?:.*\\s)*(.*)$");
+    private static final String HEADER_SUFFIX = ": ";
+    private static final String MACRO_SUFFIX = "}";
+    private static final ILogger logger = Logger.getLogger(BndCompletionProcessor.class);
+
+    private static CompletionIndex syntaxIndex;
+    private static volatile CompletionIndex workspaceIndex;
+    private static final Job workspaceIndexJob = new WorkspaceIndexJob();
+
+    public BndCompletionProcessor() {
+        // build the workspace index before the first completion is requested
+        workspaceIndexJob.schedule();
+    }
 
     @Override
     public ICompletionProposal[] computeCompletionProposals(ITextViewer viewer, int offset) {
+        IDocument document = viewer.getDocument();
+        String prefix;
         try {
-            String pre = viewer.getDocument().get(0, offset);
-            Matcher matcher = PREFIX_PATTERN.matcher(pre);
-            if (matcher.matches()) {
-                String prefix = matcher.group(1);
-                ICompletionProposal[] found = proposals(prefix, offset);
-                if (found.length == 1) {
-                    found[0].apply(viewer.getDocument());
-                    viewer.setSelectedRange(offset + (found[0].getDisplayString().length() - prefix.length() + 2), 0);
-                    return new ICompletionProposal[0];
-                }
-                return found;
-            }
-            return proposals(null, offset);
+            prefix = prefix(document, offset);
         } catch (BadLocationException e) {
-            return proposals(null, offset);
+            return proposals("", HEADER_SUFFIX, offset);
+        }
+
+        ICompletionProposal[] found;
+        int macro = prefix.lastIndexOf("${");
+        if (macro >= 0 && prefix.indexOf('}', macro) < 0)
+            found = proposals(prefix.substring(macro + 2), MACRO_SUFFIX, offset);
+        else
+            found = proposals(prefix, HEADER_SUFFIX, offset);
+
+        if (found.length == 1) {
+            found[0].apply(document);
+            Point selection = found[0].getSelection(document);
+            viewer.setSelectedRange(selection.x, 0);
+            return new ICompletionProposal[0];
+        }
+        return found;
+    }
+
+    /*
+     * The text between the last whitespace before the offset and the offset.
+     * Only the current token is scanned, so the cost does not depend on the
+     * position in the document.
+     */
+    static String prefix(IDocument document, int offset) throws BadLocationException {
+        int start = offset;
+        while (start > 0 && !Character.isWhitespace(document.getChar(start - 1))) {
+            start--;
+        }
+        return document.get(start, offset - start);
+    }
+
+    private static ICompletionProposal[] proposals(String prefix, String suffix, int offset) {
+        Map<String,String> matches = new TreeMap<String,String>();
+        getSyntaxIndex().collect(prefix, matches);
+        CompletionIndex workspace = getWorkspaceIndex();
+        if (workspace != null)
+            workspace.collect(prefix, matches);
+
+        List<ICompletionProposal> results = new ArrayList<ICompletionProposal>(matches.size());
+        for (Map.Entry<String,String> match : matches.entrySet()) {
+            String name = match.getKey();
+            IContextInformation info = new ContextInformation(name, name);
+            String text = name.substring(prefix.length());
+            results.add(new CompletionProposal(text + suffix, offset, 0, text.length() + suffix.length(), null, name, info, match.getValue())); //$NON-NLS-1$
         }
+        return results.toArray(new ICompletionProposal[0]);
     }
 
-    private static ICompletionProposal[] proposals(String prefix, int offset) {
-        ArrayList<ICompletionProposal> results = new ArrayList<ICompletionProposal>(Syntax.HELP.size());
-        for (Syntax s : Syntax.HELP.values()) {
-            if (prefix == null || s.getHeader().startsWith(prefix)) {
-                IContextInformation info = new ContextInformation(s.getHeader(), s.getHeader());
-                String text = prefix == null ? s.getHeader() : s.getHeader().substring(prefix.length());
-                results.add(new CompletionProposal(text + ": ", offset, 0, text.length() + 2, null, s.getHeader(), info, s.getLead())); //$NON-NLS-1$
+    private static synchronized CompletionIndex getSyntaxIndex() {
+        if (syntaxIndex == null) {
+            Map<String,String> entries = new LinkedHashMap<String,String>();
+            for (Syntax s : Syntax.HELP.values()) {
+                entries.put(s.getHeader(), s.getLead());
             }
+            syntaxIndex = new CompletionIndex(entries);
+        }
+        return syntaxIndex;
+    }
+
+    /*
+     * The properties defined in the workspace. The workspace can only be read
+     * under the bnd lock, so the index is not built on the UI thread: the last
+     * built index is returned and a job rebuilds it if the workspace properties
+     * have changed.
+     */
+    private static CompletionIndex getWorkspaceIndex() {
+        workspaceIndexJob.schedule();
+        return workspaceIndex;
+    }
+
+    private static class WorkspaceIndexJob extends Job {
+        private Workspace indexedWorkspace;
+        private long indexedLastModified;
+
+        WorkspaceIndexJob() {
+            super("Indexing workspace properties");
+            setSystem(true);
         }
-        Collections.sort(results, new Comparator<ICompletionProposal>() {
-            @Override
-            public int compare(ICompletionProposal p1, ICompletionProposal p2) {
-                return p1.getDisplayString().compareTo(p2.getDisplayString());
+
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            final Workspace workspace = Central.getWorkspaceIfPresent();
+            if (workspace == null)
+                return Status.OK_STATUS;
+            try {
+                Central.bndReadCall(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        long lastModified = workspace.lastModified();
+                        if (workspace != indexedWorkspace || lastModified != indexedLastModified) {
+                            Map<String,String> entries = new LinkedHashMap<String,String>();
+                            for (String key : workspace.getPropertyKeys(true)) {
+                                entries.put(key, null);
+                            }
+                            workspaceIndex = new CompletionIndex(entries);
+                            indexedWorkspace = workspace;
+                            indexedLastModified = lastModified;
+                        }
+                        return null;
+                    }
+                }, monitor);
+            } catch (TimeoutException e) {
+                // the workspace is busy; the index is rebuilt on the next completion
+            } catch (Exception e) {
+                logger.logError("Failed to index the workspace properties", e);
             }
-        });
-        return results.toArray(new ICompletionProposal[0]);
+            return Status.OK_STATUS;
+        }
     }
 
     @Override
@@ -0,0 +1,45 @@
+package bndtools.editor.completion;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A sorted index of completion names and their descriptions.
+ * <p>
+ * The names with a prefix form a contiguous range of the sorted names, which is found with a binary search, so a lookup
+ * costs O(log n + k) for k matches regardless of the number of names.
+ */
+final class CompletionIndex {
+
+    private final String[] names;
+    private final String[] descriptions;
+
+    /**
+     * @param entries
+     *            The descriptions keyed on name; a description may be {@code null}.
+     */
+    CompletionIndex(Map<String,String> entries) {
+        TreeMap<String,String> sorted = new TreeMap<String,String>(entries);
+        names = sorted.keySet().toArray(new String[sorted.size()]);
+        descriptions = sorted.values().toArray(new String[sorted.size()]);
+    }
+
+    /**
+     * Add the names starting with a prefix and their descriptions to a map. Names which are already in the map are not
+     * replaced.
+     */
+    void collect(String prefix, Map<String,String> into) {
+        int i = Arrays.binarySearch(names, prefix);
+        if (i < 0)
+            i = -i - 1;
+        for (; i < names.length && names[i].startsWith(prefix); i++) {
+            if (!into.containsKey(names[i]))
+                into.put(names[i], descriptions[i]);
+        }
+    }
+
+    int size() {
+        return names.length;
+    }
+}
@@ -0,0 +1,131 @@
+package bndtools.editor.model;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import aQute.bnd.build.model.BndEditModel;
+import aQute.bnd.properties.IDocument;
+
+/**
+ * A {@link BndEditModel} which only notifies the listeners of the properties that changed when it is loaded from a
+ * document.
+ * <p>
+ * {@link BndEditModel} notifies the listeners of every known property when it is loaded, so every form part refreshes
+ * whatever changed in the document. This model keeps the raw values of the last loaded document and, on a load,
+ * notifies only the listeners of properties whose raw value changed or which were modified in the model since the last
+ * load. Documents can be parsed with {@link #parse(String)} outside of the UI thread before they are loaded.
+ */
+public class IncrementalEditModel extends BndEditModel {
+
+    private final PropertyChangeSupport listeners = new PropertyChangeSupport(this);
+    private final Set<String> modified = new LinkedHashSet<String>();
+    private Map<String,String> loaded;
+    private boolean loading;
+
+    public IncrementalEditModel() {
+        super.addPropertyChangeListener(new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                if (loading)
+                    return;
+                if (evt.getPropertyName() != null)
+                    modified.add(evt.getPropertyName());
+                listeners.firePropertyChange(evt);
+            }
+        });
+    }
+
+    /**
+     * Parse the text of a document into the raw values of its properties. This can be called from any thread.
+     */
+    public static Map<String,String> parse(String text) throws IOException {
+        Properties properties = new Properties();
+        properties.load(new StringReader(text));
+        Map<String,String> values = new HashMap<String,String>(properties.size() * 2);
+        for (String name : properties.stringPropertyNames()) {
+            values.put(name, properties.getProperty(name));
+        }
+        return values;
+    }
+
+    @Override
+    public void loadFrom(IDocument document) throws IOException {
+        String text = document.get();
+        loadFrom(document, text, parse(text));
+    }
+
+    /**
+     * Load the model from a document which was parsed with {@link #parse(String)}. If the document changed since it
+     * was parsed, it is parsed again.
+     *
+     * @param document
+     *            The document.
+     * @param text
+     *            The text of the document that was parsed.
+     * @param values
+     *            The parsed values.
+     */
+    public void loadFrom(IDocument document, String text, Map<String,String> values) throws IOException {
+        if (!text.equals(document.get()))
+            values = parse(document.get());
+
+        if (loaded == null) {
+            // first load: every property is new
+            super.loadFrom(document);
+            loaded = values;
+            modified.clear();
+            return;
+        }
+
+        Set<String> changed = new LinkedHashSet<String>(modified);
+        for (Map.Entry<String,String> entry : values.entrySet()) {
+            if (!entry.getValue().equals(loaded.get(entry.getKey())))
+                changed.add(entry.getKey());
+        }
+        for (String name : loaded.keySet()) {
+            if (!values.containsKey(name))
+                changed.add(name);
+        }
+
+        loading = true;
+        try {
+            super.loadFrom(document);
+        } finally {
+            loading = false;
+        }
+        loaded = values;
+        modified.clear();
+
+        for (String name : changed) {
+            listeners.firePropertyChange(name, null, null);
+        }
+    }
+
+    @Override
+    public void addPropertyChangeListener(PropertyChangeListener listener) {
+        listeners.addPropertyChangeListener(listener);
+    }
+
+    @Override
+    public void addPropertyChangeListener(String propertyName, PropertyChangeListener listener) {
+        listeners.addPropertyChangeListener(propertyName, listener);
+    }
+
+    @Override
+    public void removePropertyChangeListener(PropertyChangeListener listener) {
+        listeners.removePropertyChangeListener(listener);
+    }
+
+    @Override
+    public void removePropertyChangeListener(String propertyName, PropertyChangeListener listener) {
+        listeners.removePropertyChangeListener(propertyName, listener);
+    }
+}
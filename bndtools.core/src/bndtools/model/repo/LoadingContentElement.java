@@ -0,0 +1,37 @@
+package bndtools.model.repo;
+
+/**
+ * Placeholder child shown under a repository tree node whose children are still being loaded in the background.
+ */
+public class LoadingContentElement {
+
+    private final Object parent;
+
+    public LoadingContentElement(Object parent) {
+        this.parent = parent;
+    }
+
+    public Object getParent() {
+        return parent;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 + ((parent == null) ? 0 : parent.hashCode());
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof LoadingContentElement))
+            return false;
+        LoadingContentElement other = (LoadingContentElement) obj;
+        return parent == null ? other.parent == null : parent.equals(other.parent);
+    }
+
+    @Override
+    public String toString() {
+        return "Loading...";
+    }
+}
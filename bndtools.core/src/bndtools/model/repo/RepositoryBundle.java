@@ -31,6 +31,34 @@ public class RepositoryBundle extends RepositoryEntry implements Actionable {
         return "RepositoryBundle [repo=" + getRepo() + ", bsn=" + getBsn() + "]";
     }
 
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + getRepo().hashCode();
+        result = prime * result + ((getBsn() == null) ? 0 : getBsn().hashCode());
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        RepositoryBundle other = (RepositoryBundle) obj;
+        if (getRepo() != other.getRepo())
+            return false;
+        if (getBsn() == null) {
+            if (other.getBsn() != null)
+                return false;
+        } else if (!getBsn().equals(other.getBsn()))
+            return false;
+        return true;
+    }
+
     @Override
     public String title(Object... target) throws Exception {
         try {
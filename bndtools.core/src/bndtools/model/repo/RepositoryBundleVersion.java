@@ -35,6 +35,34 @@ public class RepositoryBundleVersion extends RepositoryEntry implements Actionab
         return "RepositoryBundleVersion [version=" + version + ", bundle=" + bundle + "]";
     }
 
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + bundle.hashCode();
+        result = prime * result + ((version == null) ? 0 : version.hashCode());
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        RepositoryBundleVersion other = (RepositoryBundleVersion) obj;
+        if (!bundle.equals(other.bundle))
+            return false;
+        if (version == null) {
+            if (other.version != null)
+                return false;
+        } else if (!version.equals(other.version))
+            return false;
+        return true;
+    }
+
     @Override
     public String title(Object... target) throws Exception {
         try {
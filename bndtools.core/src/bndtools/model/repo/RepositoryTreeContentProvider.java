@@ -12,11 +12,19 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.bndtools.api.ILogger;
 import org.bndtools.api.Logger;
+import org.bndtools.utils.swt.SWTConcurrencyUtil;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.viewers.ITreeContentProvider;
+import org.eclipse.jface.viewers.StructuredViewer;
 import org.eclipse.jface.viewers.Viewer;
+import org.eclipse.swt.widgets.Display;
 import org.osgi.resource.Capability;
 import org.osgi.resource.Requirement;
 import org.osgi.service.repository.Repository;
@@ -45,6 +53,12 @@ public class RepositoryTreeContentProvider implements ITreeContentProvider {
 
     private Requirement requirementFilter = null;
 
+    private volatile StructuredViewer viewer;
+    private final Map<RepositoryBundle,Object[]> versionCache = new ConcurrentHashMap<RepositoryBundle,Object[]>();
+    private final Set<RepositoryBundle> staleVersions = Collections.newSetFromMap(new ConcurrentHashMap<RepositoryBundle,Boolean>());
+    private final Set<RepositoryBundle> fetchingVersions = Collections.newSetFromMap(new ConcurrentHashMap<RepositoryBundle,Boolean>());
+    private final Set<RepositoryPlugin> loadingRepositories = Collections.newSetFromMap(new ConcurrentHashMap<RepositoryPlugin,Boolean>());
+
     public RepositoryTreeContentProvider() {
         this.phases = EnumSet.allOf(ResolutionPhase.class);
     }
@@ -103,10 +117,28 @@ public class RepositoryTreeContentProvider implements ITreeContentProvider {
     }
 
     @Override
-    public void dispose() {}
+    public void dispose() {
+        versionCache.clear();
+        staleVersions.clear();
+    }
 
     @Override
-    public void inputChanged(Viewer viewer, Object oldInput, Object newInput) {}
+    public void inputChanged(Viewer viewer, Object oldInput, Object newInput) {
+        this.viewer = (viewer instanceof StructuredViewer) ? (StructuredViewer) viewer : null;
+        versionCache.clear();
+        staleVersions.clear();
+    }
+
+    /**
+     * Mark the cached versions of the bundles in a repository as stale. The versions are fetched again in the
+     * background the next time they are requested; until then the stale versions are returned.
+     */
+    public void invalidateVersions(RepositoryPlugin repo) {
+        for (RepositoryBundle bundle : versionCache.keySet()) {
+            if (bundle.getRepo() == repo)
+                staleVersions.add(bundle);
+        }
+    }
 
     @Override
     public Object[] getChildren(Object parentElement) {
@@ -114,7 +146,13 @@ public class RepositoryTreeContentProvider implements ITreeContentProvider {
 
         if (parentElement instanceof RepositoryPlugin) {
             RepositoryPlugin repo = (RepositoryPlugin) parentElement;
-            result = getRepositoryBundles(repo);
+            if (Central.isRepositoryLoading(repo)) {
+                refreshWhenLoaded(repo);
+                result = new Object[] {
+                        new LoadingContentElement(repo)
+                };
+            } else
+                result = getRepositoryBundles(repo);
         } else if (parentElement instanceof RepositoryBundle) {
             RepositoryBundle bundle = (RepositoryBundle) parentElement;
             result = getRepositoryBundleVersions(bundle);
@@ -128,6 +166,9 @@ public class RepositoryTreeContentProvider implements ITreeContentProvider {
 
     @Override
     public Object getParent(Object element) {
+        if (element instanceof LoadingContentElement) {
+            return ((LoadingContentElement) element).getParent();
+        }
         if (element instanceof RepositoryBundle) {
             return ((RepositoryBundle) element).getRepo();
         }
@@ -209,7 +250,89 @@ public class RepositoryTreeContentProvider implements ITreeContentProvider {
         return result;
     }
 
-    Object[] getRepositoryBundleVersions(RepositoryBundle bundle) {
+    /*
+     * The placeholder of a repository which is still loading is replaced once
+     * it is loaded. Viewers registered with Central are refreshed by it, but
+     * other viewers using this provider must be refreshed here.
+     */
+    private void refreshWhenLoaded(final RepositoryPlugin repo) {
+        final StructuredViewer currentViewer = viewer;
+        if (currentViewer == null || !loadingRepositories.add(repo)) {
+            return;
+        }
+
+        Job job = new Job("Loading repository " + repo.getName()) {
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                try {
+                    Central.awaitRepositoryLoaded(repo);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return Status.CANCEL_STATUS;
+                } finally {
+                    loadingRepositories.remove(repo);
+                }
+                SWTConcurrencyUtil.execForControl(currentViewer.getControl(), true, new Runnable() {
+                    @Override
+                    public void run() {
+                        if (viewer == currentViewer)
+                            currentViewer.refresh(repo);
+                    }
+                });
+                return Status.OK_STATUS;
+            }
+        };
+        job.setSystem(true);
+        job.schedule();
+    }
+
+    /*
+     * Versions are fetched in the background when requested from the display
+     * thread, so a slow repository never blocks the UI. A placeholder is
+     * shown until the versions are available.
+     */
+    Object[] getRepositoryBundleVersions(final RepositoryBundle bundle) {
+        final StructuredViewer currentViewer = viewer;
+        if (currentViewer == null || Display.getCurrent() == null) {
+            return fetchRepositoryBundleVersions(bundle);
+        }
+
+        Object[] cached = versionCache.get(bundle);
+        if (cached != null && !staleVersions.contains(bundle)) {
+            return cached;
+        }
+
+        if (fetchingVersions.add(bundle)) {
+            Job job = new Job("Fetching versions of " + bundle.getBsn()) {
+                @Override
+                protected IStatus run(IProgressMonitor monitor) {
+                    try {
+                        RepositoryBundleVersion[] versions = fetchRepositoryBundleVersions(bundle);
+                        versionCache.put(bundle, versions != null ? versions : new RepositoryBundleVersion[0]);
+                        staleVersions.remove(bundle);
+                    } finally {
+                        fetchingVersions.remove(bundle);
+                    }
+                    SWTConcurrencyUtil.execForControl(currentViewer.getControl(), true, new Runnable() {
+                        @Override
+                        public void run() {
+                            if (viewer == currentViewer)
+                                currentViewer.refresh(bundle);
+                        }
+                    });
+                    return Status.OK_STATUS;
+                }
+            };
+            job.setSystem(true);
+            job.schedule();
+        }
+
+        return cached != null ? cached : new Object[] {
+                new LoadingContentElement(bundle)
+        };
+    }
+
+    RepositoryBundleVersion[] fetchRepositoryBundleVersions(RepositoryBundle bundle) {
         RepositoryBundleVersion[] result = null;
 
         SortedSet<Version> versions = null;
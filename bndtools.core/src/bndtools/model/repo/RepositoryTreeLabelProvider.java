@@ -117,6 +117,10 @@ public class RepositoryTreeLabelProvider extends StyledCellLabelProvider impleme
             cell.setText(label.getString());
             cell.setStyleRanges(label.getStyleRanges());
             cell.setImage(matchImg);
+        } else if (element instanceof LoadingContentElement) {
+            StyledString label = new StyledString(element.toString(), StyledString.QUALIFIER_STYLER);
+            cell.setText(label.getString());
+            cell.setStyleRanges(label.getStyleRanges());
         } else if (element instanceof ContinueSearchElement) {
             StyledString label = new StyledString("Continue Search on JPM4J.org...", new HyperlinkStyler());
             cell.setText(label.getString());
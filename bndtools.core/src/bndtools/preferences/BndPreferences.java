@@ -36,6 +36,7 @@ public class BndPreferences {
     private static final String PREF_BUILDBEFORELAUNCH = "buildBeforeLaunch";
     private static final String PREF_ENABLE_TEMPLATE_REPO = "enableTemplateRepo";
     private static final String PREF_TEMPLATE_REPO_URI_LIST = "templateRepoUriList";
+    private static final String PREF_DOWNLOAD_PARALLELISM = "downloadParallelism";
 
     private final IPreferenceStore store;
 
@@ -51,6 +52,7 @@ public class BndPreferences {
         store.setDefault(PREF_VCS_IGNORES_PLUGINS, "");
         store.setDefault(PREF_ENABLE_TEMPLATE_REPO, true);
         store.setDefault(PREF_TEMPLATE_REPO_URI_LIST, "https://raw.githubusercontent.com/bndtools/bundle-hub/master/index.xml.gz");
+        store.setDefault(PREF_DOWNLOAD_PARALLELISM, 4);
     }
 
     private String mapToPreference(Map<String,Boolean> names) {
@@ -181,6 +183,14 @@ public class BndPreferences {
         store.setValue(PREF_TEMPLATE_REPO_URI_LIST, sb.toString());
     }
 
+    public void setDownloadParallelism(int parallelism) {
+        store.setValue(PREF_DOWNLOAD_PARALLELISM, parallelism);
+    }
+
+    public int getDownloadParallelism() {
+        return store.getInt(PREF_DOWNLOAD_PARALLELISM);
+    }
+
     public IPreferenceStore getStore() {
         return store;
     }
@@ -24,6 +24,7 @@ import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
 import org.osgi.resource.Capability;
 import aQute.lib.io.IO;
+import bndtools.central.CapabilityIndex;
 import bndtools.model.resolution.RequirementWrapper;
 
 public class AnalyseBundleResolutionJob extends Job {
@@ -75,23 +76,17 @@ public class AnalyseBundleResolutionJob extends Job {
             }
 
             // Check for resolved requirements
-            for (String namespace : allReqs.keySet()) {
-                List<RequirementWrapper> rws = allReqs.get(namespace);
-                List<Capability> candidates = allCaps.get(namespace);
-
-                if (candidates == null)
-                    continue;
-
+            CapabilityIndex index = new CapabilityIndex();
+            for (List<Capability> caps : allCaps.values()) {
+                for (Capability cap : caps) {
+                    index.addCapability(cap);
+                }
+            }
+            for (List<RequirementWrapper> rws : allReqs.values()) {
                 for (RequirementWrapper rw : rws) {
                     String filterStr = rw.requirement.getDirectives().get("filter");
                     if (filterStr != null) {
-                        aQute.lib.filter.Filter filter = new aQute.lib.filter.Filter(filterStr);
-                        for (Capability cand : candidates) {
-                            if (filter.matchMap(cand.getAttributes())) {
-                                rw.resolved = true;
-                                break;
-                            }
-                        }
+                        rw.resolved = !index.findProviders(rw.requirement).isEmpty();
                     }
                 }
             }
@@ -1,13 +1,13 @@
 package bndtools.tasks;
 
 import java.io.File;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 
@@ -24,6 +24,7 @@ import aQute.bnd.header.Attrs;
 import aQute.bnd.header.Parameters;
 import aQute.bnd.osgi.Builder;
 import aQute.bnd.osgi.Clazz;
+import aQute.bnd.osgi.Descriptors.PackageRef;
 import aQute.bnd.osgi.Jar;
 import aQute.bnd.osgi.Processor;
 import aQute.bnd.osgi.resource.CapReqBuilder;
@@ -132,6 +133,7 @@ public abstract class BndBuilderCapReqLoader implements CapReqLoader {
         Map<String,List<RequirementWrapper>> requirements = new HashMap<String,List<RequirementWrapper>>();
 
         // Process imports
+        Map<String,List<Clazz>> importersByPackage = findImportingClasses(builder);
         String importPkgStr = attribs.getValue(Constants.IMPORT_PACKAGE);
         Parameters importsMap = new Parameters(importPkgStr);
         for (Entry<String,Attrs> entry : importsMap.entrySet()) {
@@ -144,7 +146,9 @@ public abstract class BndBuilderCapReqLoader implements CapReqLoader {
             if (Constants.RESOLUTION_OPTIONAL.equals(attrs.get(Constants.RESOLUTION_DIRECTIVE + ":")))
                 rb.addDirective(Namespace.REQUIREMENT_RESOLUTION_DIRECTIVE, Namespace.RESOLUTION_OPTIONAL);
 
-            Collection<Clazz> importers = findImportingClasses(pkgName, builder);
+            List<Clazz> importers = importersByPackage.get(pkgName);
+            if (importers == null)
+                importers = Collections.emptyList();
 
             RequirementWrapper rw = new RequirementWrapper();
             rw.requirement = rb.buildSyntheticRequirement();
@@ -241,21 +245,37 @@ public abstract class BndBuilderCapReqLoader implements CapReqLoader {
         return filter.toString();
     }
 
-    static List<Clazz> findImportingClasses(String pkgName, Builder builder) throws Exception {
-        List<Clazz> classes = new LinkedList<Clazz>();
-        Collection<Clazz> importers = builder.getClasses("", "IMPORTING", pkgName);
+    /*
+     * Map the referred packages to the classes referring to them, in a single
+     * pass over the class space instead of a pass per imported package.
+     */
+    static Map<String,List<Clazz>> findImportingClasses(Builder builder) throws Exception {
+        Map<String,List<Clazz>> importers = new HashMap<String,List<Clazz>>();
+        for (Clazz clazz : builder.getClassspace().values()) {
+            Set<PackageRef> referred = clazz.getReferred();
+            if (referred == null)
+                continue;
 
-        // Remove *this* package
-        for (Clazz clazz : importers) {
             String fqn = clazz.getFQN();
             int dot = fqn.lastIndexOf('.');
-            if (dot >= 0) {
-                String pkg = fqn.substring(0, dot);
-                if (!pkgName.equals(pkg))
-                    classes.add(clazz);
+            if (dot < 0)
+                continue;
+            String pkg = fqn.substring(0, dot);
+
+            for (PackageRef ref : referred) {
+                String pkgName = ref.getFQN();
+                // Remove *this* package
+                if (pkgName.equals(pkg))
+                    continue;
+                List<Clazz> classes = importers.get(pkgName);
+                if (classes == null) {
+                    classes = new LinkedList<Clazz>();
+                    importers.put(pkgName, classes);
+                }
+                classes.add(clazz);
             }
         }
-        return classes;
+        return importers;
     }
 
     public File getFile() {
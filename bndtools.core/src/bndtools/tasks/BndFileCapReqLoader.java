@@ -10,6 +10,7 @@ import org.eclipse.jdt.core.JavaCore;
 
 import aQute.bnd.build.Project;
 import aQute.bnd.osgi.Builder;
+import aQute.bnd.osgi.Jar;
 import bndtools.central.Central;
 
 public class BndFileCapReqLoader extends BndBuilderCapReqLoader {
@@ -44,14 +45,55 @@ public class BndFileCapReqLoader extends BndBuilderCapReqLoader {
             if (b == null) {
                 b = new Builder();
                 b.setProperties(file);
+                b.build();
+            } else {
+                Builder existing = getExistingBuild(bndProject, b);
+                if (existing != null) {
+                    b.close();
+                    b = existing;
+                } else {
+                    b.build();
+                }
             }
-            b.build();
 
             builder = b;
         }
         return builder;
     }
 
+    /*
+     * Analyse the bundle last built for the project instead of building it
+     * again, as long as it is newer than the bnd file and the files it
+     * includes, and the project is not stale.
+     */
+    private Builder getExistingBuild(Project project, Builder b) throws Exception {
+        if (project.isStale())
+            return null;
+        File[] buildFiles = project.getBuildFiles(false);
+        if (buildFiles == null)
+            return null;
+
+        String bsn = b.getBsn();
+        if (bsn == null)
+            return null;
+        long required = Math.max(b.lastModified(), file.lastModified());
+        for (File buildFile : buildFiles) {
+            if (!buildFile.isFile() || buildFile.lastModified() < required)
+                continue;
+
+            Jar jar = new Jar(buildFile);
+            if (!bsn.equals(jar.getBsn())) {
+                jar.close();
+                continue;
+            }
+            Builder existing = new Builder();
+            existing.setJar(jar);
+            existing.analyze();
+            return existing;
+        }
+        return null;
+    }
+
     @Override
     public synchronized void close() throws IOException {
         if (builder != null)
@@ -1,13 +1,13 @@
 package bndtools.views.repository;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.SortedSet;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.TimeoutException;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -18,17 +18,16 @@ import org.eclipse.core.runtime.jobs.Job;
 
 import aQute.bnd.service.RemoteRepositoryPlugin;
 import aQute.bnd.service.RepositoryPlugin;
-import aQute.bnd.service.ResourceHandle;
-import aQute.bnd.service.ResourceHandle.Location;
-import aQute.bnd.service.Strategy;
 import aQute.bnd.version.Version;
 import bndtools.Plugin;
 import bndtools.model.repo.RepositoryBundle;
 import bndtools.model.repo.RepositoryBundleVersion;
+import bndtools.preferences.BndPreferences;
+import bndtools.views.repository.RepoDownloadManager.Download;
 
 public class RepoDownloadJob extends Job {
 
-    private static final Lock LOCK = new ReentrantLock(true);
+    private static final long PROGRESS_INTERVAL = 200;
 
     private final Collection<RemoteRepositoryPlugin> repos;
     private final Collection<RepositoryBundle> bundles;
@@ -45,62 +44,80 @@ public class RepoDownloadJob extends Job {
     protected IStatus run(IProgressMonitor progress) {
         SubMonitor monitor = SubMonitor.convert(progress);
 
-        boolean locked = LOCK.tryLock();
+        MultiStatus status = new MultiStatus(Plugin.PLUGIN_ID, 0, "One or more repository files failed to download.", null);
+        monitor.setTaskName("Expanding repository contents");
+        List<RepositoryBundleVersion> rbvs = new LinkedList<RepositoryBundleVersion>();
         try {
-            while (!locked) {
-                monitor.setBlocked(new Status(IStatus.INFO, Plugin.PLUGIN_ID, 0, "Waiting for other download jobs to complete.", null));
-                if (progress.isCanceled())
-                    return Status.CANCEL_STATUS;
-
-                try {
-                    locked = LOCK.tryLock(5, TimeUnit.SECONDS);
-                } catch (InterruptedException e) {}
+            for (RemoteRepositoryPlugin repo : repos) {
+                expandContentsInto(repo, rbvs);
             }
-            monitor.clearBlocked();
+            for (RepositoryBundle bundle : bundles) {
+                expandContentsInto(bundle, rbvs);
+            }
+            rbvs.addAll(bundleVersions);
+        } catch (Exception e) {
+            return new Status(IStatus.ERROR, Plugin.PLUGIN_ID, 0, "Error listing repository contents", e);
+        }
 
-            MultiStatus status = new MultiStatus(Plugin.PLUGIN_ID, 0, "One or more repository files failed to download.", null);
-            monitor.setTaskName("Expanding repository contents");
-            List<RepositoryBundleVersion> rbvs = new LinkedList<RepositoryBundleVersion>();
-            try {
-                for (RemoteRepositoryPlugin repo : repos) {
-                    expandContentsInto(repo, rbvs);
-                }
-                for (RepositoryBundle bundle : bundles) {
-                    expandContentsInto(bundle, rbvs);
-                }
-                rbvs.addAll(bundleVersions);
-            } catch (Exception e) {
-                return new Status(IStatus.ERROR, Plugin.PLUGIN_ID, 0, "Error listing repository contents", e);
+        int parallelism = new BndPreferences().getDownloadParallelism();
+        List<RepositoryBundleVersion> requested = new ArrayList<RepositoryBundleVersion>(rbvs.size());
+        List<Download> downloads = new ArrayList<Download>(rbvs.size());
+        for (RepositoryBundleVersion rbv : rbvs) {
+            RepositoryPlugin repo = rbv.getRepo();
+            if (!(repo instanceof RemoteRepositoryPlugin)) {
+                status.add(new Status(IStatus.ERROR, Plugin.PLUGIN_ID, 0, String.format("Download of %s:%s failed: repository %s is not a remote repository", rbv.getBsn(), rbv.getVersion(), repo.getName()), null));
+                continue;
             }
+            requested.add(rbv);
+            downloads.add(RepoDownloadManager.download((RemoteRepositoryPlugin) repo, rbv.getBsn(), rbv.getVersion(), parallelism));
+        }
 
-            monitor.setWorkRemaining(rbvs.size());
-            for (RepositoryBundleVersion rbv : rbvs) {
-                if (monitor.isCanceled())
-                    return Status.CANCEL_STATUS;
-
-                String resourceName = "<<unknown>>";
-                try {
-                    RemoteRepositoryPlugin repo = (RemoteRepositoryPlugin) rbv.getRepo();
-                    ResourceHandle handle = repo.getHandle(rbv.getBsn(), rbv.getVersion().toString(), Strategy.EXACT, Collections.<String, String> emptyMap());
-                    resourceName = handle.getName();
-                    Location location = handle.getLocation();
-
-                    if (location == Location.remote) {
-                        monitor.setTaskName("Downloading " + handle.getName());
-                        handle.request();
+        int total = downloads.size();
+        monitor.setTaskName("Downloading repository contents");
+        monitor.setWorkRemaining(total);
+        int completed = 0;
+        try {
+            for (Download download : downloads) {
+                while (!download.isDone()) {
+                    if (monitor.isCanceled())
+                        return Status.CANCEL_STATUS;
+                    try {
+                        download.get(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS);
+                    } catch (TimeoutException | ExecutionException e) {
+                        // progress is reported below; failures are collected at the end
                     }
-                } catch (Exception e) {
-                    status.add(new Status(IStatus.ERROR, Plugin.PLUGIN_ID, 0, String.format("Download of %s:%s with remote name %s failed", rbv.getBsn(), rbv.getVersion(), resourceName), e));
-                } finally {
-                    monitor.worked(1);
+                    int done = countDone(downloads);
+                    monitor.worked(done - completed);
+                    completed = done;
+                    monitor.subTask(String.format("Downloaded %d of %d files", completed, total));
                 }
             }
-            return status;
-        } finally {
-            if (locked)
-                LOCK.unlock();
+        } catch (InterruptedException e) {
+            return Status.CANCEL_STATUS;
+        }
+        monitor.worked(total - completed);
+
+        for (int i = 0; i < total; i++) {
+            Download download = downloads.get(i);
+            try {
+                download.get();
+            } catch (ExecutionException e) {
+                RepositoryBundleVersion rbv = requested.get(i);
+                status.add(new Status(IStatus.ERROR, Plugin.PLUGIN_ID, 0, String.format("Download of %s:%s with remote name %s failed", rbv.getBsn(), rbv.getVersion(), download.getResourceName()), e.getCause()));
+            } catch (Exception e) {
+                return Status.CANCEL_STATUS;
+            }
         }
+        return status;
+    }
 
+    private static int countDone(List<Download> downloads) {
+        int done = 0;
+        for (Download download : downloads) {
+            if (download.isDone())
+                done++;
+        }
+        return done;
     }
 
     private void expandContentsInto(RemoteRepositoryPlugin repo, List<RepositoryBundleVersion> rbvs) throws Exception {
@@ -0,0 +1,190 @@
+package bndtools.views.repository;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import aQute.bnd.service.RemoteRepositoryPlugin;
+import aQute.bnd.service.ResourceHandle;
+import aQute.bnd.service.ResourceHandle.Location;
+import aQute.bnd.service.Strategy;
+import aQute.bnd.version.Version;
+
+/**
+ * Downloads bundles from remote repositories concurrently.
+ * <p>
+ * The number of concurrent downloads from a single repository is limited by a per-repository parallelism. The downloads
+ * of a repository are queued and only as many threads as the parallelism allows run them, so waiting downloads do not
+ * hold a thread. A request for a bundle which is already being downloaded, by any job, shares the in-flight download.
+ */
+final class RepoDownloadManager {
+
+    private static final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "Repository download " + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    private static final ConcurrentMap<String,Download> inflight = new ConcurrentHashMap<String,Download>();
+    private static final ConcurrentMap<Object,RepositoryQueue> queues = new ConcurrentHashMap<Object,RepositoryQueue>();
+
+    private RepoDownloadManager() {}
+
+    /**
+     * Start downloading a bundle unless it is already being downloaded.
+     *
+     * @param repo
+     *            The repository.
+     * @param bsn
+     *            The bundle symbolic name.
+     * @param version
+     *            The version.
+     * @param parallelism
+     *            The maximum number of concurrent downloads from the repository.
+     * @return The download.
+     */
+    static Download download(final RemoteRepositoryPlugin repo, final String bsn, final Version version, int parallelism) {
+        return submit(repo, repo.getName() + ":" + bsn + ":" + version, parallelism, new Fetch() {
+            @Override
+            public File call() throws Exception {
+                ResourceHandle handle = repo.getHandle(bsn, version.toString(), Strategy.EXACT, Collections.<String,String> emptyMap());
+                resourceName = handle.getName();
+                if (handle.getLocation() == Location.remote) {
+                    return handle.request();
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Start a fetch unless a fetch with the same key is in flight.
+     *
+     * @param repo
+     *            The repository the fetch downloads from; the parallelism is limited per repository.
+     * @param key
+     *            The key identifying the downloaded content.
+     * @param parallelism
+     *            The maximum number of concurrent fetches from the repository.
+     * @param fetch
+     *            The fetch.
+     * @return The download.
+     */
+    static Download submit(Object repo, String key, int parallelism, Fetch fetch) {
+        Download download = inflight.get(key);
+        if (download != null)
+            return download;
+
+        download = new Download(key, fetch);
+        Download existing = inflight.putIfAbsent(key, download);
+        if (existing != null)
+            return existing;
+
+        getQueue(repo).submit(download, parallelism);
+        return download;
+    }
+
+    private static RepositoryQueue getQueue(Object repo) {
+        RepositoryQueue queue = queues.get(repo);
+        if (queue == null) {
+            RepositoryQueue newQueue = new RepositoryQueue();
+            queue = queues.putIfAbsent(repo, newQueue);
+            if (queue == null)
+                queue = newQueue;
+        }
+        return queue;
+    }
+
+    /*
+     * The downloads of a repository. At most the latest requested parallelism
+     * of downloads run at once; the others wait in the queue.
+     */
+    private static final class RepositoryQueue {
+        private final Deque<Download> waiting = new ArrayDeque<Download>();
+        private int permits = 1;
+        private int running;
+
+        void submit(Download download, int parallelism) {
+            List<Download> start = new ArrayList<Download>();
+            synchronized (this) {
+                permits = Math.max(1, parallelism);
+                waiting.add(download);
+                while (running < permits && !waiting.isEmpty()) {
+                    running++;
+                    start.add(waiting.poll());
+                }
+            }
+            for (Download next : start) {
+                execute(next);
+            }
+        }
+
+        private void execute(final Download download) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        download.run();
+                    } finally {
+                        next();
+                    }
+                }
+            });
+        }
+
+        private void next() {
+            Download download;
+            synchronized (this) {
+                download = running <= permits ? waiting.poll() : null;
+                if (download == null) {
+                    running--;
+                    return;
+                }
+            }
+            execute(download);
+        }
+    }
+
+    /**
+     * Fetches the content of a download.
+     */
+    abstract static class Fetch implements Callable<File> {
+        volatile String resourceName = "<<unknown>>";
+    }
+
+    static final class Download extends FutureTask<File> {
+        private final String key;
+        private final Fetch fetch;
+
+        Download(String key, Fetch fetch) {
+            super(fetch);
+            this.key = key;
+            this.fetch = fetch;
+        }
+
+        String getResourceName() {
+            return fetch.resourceName;
+        }
+
+        @Override
+        protected void done() {
+            inflight.remove(key, this);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package org.bndtools.core.resolve;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import aQute.bnd.build.Workspace;
+import aQute.bnd.build.model.BndEditModel;
+import aQute.bnd.osgi.Constants;
+import aQute.bnd.osgi.Processor;
+import bndtools.central.Central;
+
+/**
+ * Cache of the results of resolving run descriptors.
+ * <p>
+ * A result is keyed on the run descriptor file and a fingerprint of the inputs of the resolution: the expanded values
+ * of the instructions the resolver reads, the repositories of the workspace and the repository generation of
+ * {@link Central}. Resolving a run descriptor again without changing any of these when saving it with auto-resolve,
+ * for instance after editing unrelated instructions, returns the previous result without running the resolver.
+ * <p>
+ * Only successful resolutions are cached. The repository generation only changes when bndtools is told about changes
+ * to the repositories, so an explicit resolve always runs the resolver and replaces the cached result.
+ */
+public final class ResolutionCache {
+
+    private static final int MAX_ENTRIES = 32;
+
+    private static final String[] INPUTS = {
+            Constants.RUNFW, Constants.RUNEE, Constants.RUNREQUIRES, Constants.RUNBLACKLIST, Constants.RUNREPOS, Constants.RUNPROPERTIES, Constants.RUNSYSTEMPACKAGES, Constants.RUNSYSTEMCAPABILITIES,
+            Constants.RUNPATH, "-runprovidedcapabilities", "-resolve.effective", "-resolve.preferences", "-augment", "-distro"
+    };
+
+    private static final Map<Key,ResolutionResult> results = new LinkedHashMap<Key,ResolutionResult>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key,ResolutionResult> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private ResolutionCache() {}
+
+    /**
+     * The key of a resolution. The workspace and repositories are compared by identity, since a refreshed workspace
+     * may create new repository instances with the same names. They are held weakly so the cache does not keep a
+     * discarded workspace alive; a key whose workspace or repositories were collected never matches again.
+     */
+    static final class Key {
+        final String file;
+        final String inputs;
+        final List<WeakReference<Object>> instances;
+        final int hash;
+
+        Key(String file, String inputs, List<Object> instances) {
+            this.file = file;
+            this.inputs = inputs;
+            this.instances = new ArrayList<WeakReference<Object>>(instances.size());
+            int h = file.hashCode() * 31 + inputs.hashCode();
+            for (Object instance : instances) {
+                this.instances.add(new WeakReference<Object>(instance));
+                h = h * 31 + System.identityHashCode(instance);
+            }
+            this.hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            if (hash != other.hash || !file.equals(other.file) || !inputs.equals(other.inputs) || instances.size() != other.instances.size())
+                return false;
+            for (int i = 0; i < instances.size(); i++) {
+                Object instance = instances.get(i).get();
+                if (instance == null || instance != other.instances.get(i).get())
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Calculate the key of the resolution of a model.
+     *
+     * @return The key or {@code null} if the resolution of the model cannot be cached.
+     */
+    static Key key(BndEditModel model) throws Exception {
+        File file = model.getBndResource();
+        Workspace workspace = model.getWorkspace();
+        if (file == null || workspace == null)
+            return null;
+
+        List<Object> instances = new ArrayList<Object>();
+        instances.add(workspace);
+        instances.addAll(workspace.getRepositories());
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(Central.getRepositoryGeneration()).append('\n');
+        Processor properties = model.getProperties();
+        for (String input : INPUTS) {
+            String value = properties.getProperty(input);
+            if (value != null)
+                sb.append(input).append('=').append(value).append('\n');
+        }
+        return new Key(file.getAbsolutePath(), sb.toString(), instances);
+    }
+
+    static ResolutionResult get(Key key) {
+        synchronized (results) {
+            return results.get(key);
+        }
+    }
+
+    static void put(Key key, ResolutionResult result) {
+        synchronized (results) {
+            results.put(key, result);
+        }
+    }
+
+    /**
+     * Remove the cached resolutions of a model, so it is resolved again.
+     */
+    public static void remove(BndEditModel model) {
+        File file = model.getBndResource();
+        if (file == null)
+            return;
+        String path = file.getAbsolutePath();
+        synchronized (results) {
+            for (Iterator<Key> iter = results.keySet().iterator(); iter.hasNext();) {
+                if (iter.next().file.equals(path))
+                    iter.remove();
+            }
+        }
+    }
+}
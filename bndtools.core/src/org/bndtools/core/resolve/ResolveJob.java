@@ -19,6 +19,7 @@ public class ResolveJob extends Job {
 
     private final BndEditModel model;
     private final List<ResolutionCallback> callbacks = new LinkedList<ResolutionCallback>();
+    private boolean useCache;
 
     private ResolutionResult result;
 
@@ -53,7 +54,7 @@ public class ResolveJob extends Job {
 
     @Override
     protected IStatus run(IProgressMonitor monitor) {
-        ResolveOperation operation = new ResolveOperation(model, callbacks);
+        ResolveOperation operation = new ResolveOperation(model, callbacks, useCache);
         operation.run(monitor);
         result = operation.getResult();
 
@@ -64,6 +65,13 @@ public class ResolveJob extends Job {
         return result;
     }
 
+    /**
+     * Allow a cached result to be used if the inputs of the resolution did not change. Only for automatic resolution.
+     */
+    public void setUseCache(boolean useCache) {
+        this.useCache = useCache;
+    }
+
     public void addCallback(ResolutionCallback callback) {
         callbacks.add(callback);
     }
@@ -32,6 +32,7 @@ public class ResolveOperation implements IRunnableWithProgress {
 
     private final BndEditModel model;
     private final List<ResolutionCallback> callbacks;
+    private final boolean useCache;
 
     private ResolutionResult result;
 
@@ -40,13 +41,44 @@ public class ResolveOperation implements IRunnableWithProgress {
     }
 
     public ResolveOperation(BndEditModel model, List<ResolutionCallback> callbacks) {
+        this(model, callbacks, false);
+    }
+
+    /**
+     * @param useCache
+     *            Whether a cached result may be returned instead of running the resolver. The cache only notices
+     *            repository changes reported to bndtools, so it is meant for automatic resolution and not for an
+     *            explicit request to resolve.
+     */
+    public ResolveOperation(BndEditModel model, List<ResolutionCallback> callbacks, boolean useCache) {
         this.model = model;
         this.callbacks = callbacks;
+        this.useCache = useCache;
     }
 
     @Override
     public void run(IProgressMonitor monitor) {
 
+        // Reuse the previous result if the inputs did not change. Callbacks
+        // must see the resolution, so it is always run when there are any.
+        // A successful resolution is cached even when the cache is not used,
+        // so it replaces an outdated result.
+        ResolutionCache.Key cacheKey = null;
+        if (callbacks.isEmpty()) {
+            try {
+                cacheKey = ResolutionCache.key(model);
+            } catch (Exception e) {
+                cacheKey = null;
+            }
+            if (cacheKey != null && useCache) {
+                ResolutionResult cached = ResolutionCache.get(cacheKey);
+                if (cached != null) {
+                    result = cached;
+                    return;
+                }
+            }
+        }
+
         MultiStatus status = new MultiStatus(Plugin.PLUGIN_ID, 0, Messages.ResolveOperation_errorOverview, null);
 
         // Start a coordination
@@ -71,6 +103,8 @@ public class ResolveOperation implements IRunnableWithProgress {
             }
 
             result = new ResolutionResult(Outcome.Resolved, wirings, optionalResources, null, status, logger.getLog());
+            if (cacheKey != null)
+                ResolutionCache.put(cacheKey, result);
             if (coordination != null)
                 coordination.end();
         } catch (ResolveCancelledException e) {
@@ -4,6 +4,7 @@ import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.lang.reflect.InvocationTargetException;
 
+import org.bndtools.core.resolve.ResolutionCache;
 import org.bndtools.core.resolve.ResolutionResult;
 import org.bndtools.core.resolve.ResolveOperation;
 import org.eclipse.core.runtime.IStatus;
@@ -78,6 +79,7 @@ public class ResolutionResultsWizardPage extends WizardPage implements Resolutio
     @Override
     public void recalculate() {
         try {
+            ResolutionCache.remove(model);
             ResolveOperation resolver = new ResolveOperation(model);
             getContainer().run(true, true, resolver);
 
@@ -0,0 +1,78 @@
+package bndtools.editor.completion;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+public class CompletionIndexTest extends TestCase {
+
+    private CompletionIndex index;
+
+    @Override
+    protected void setUp() throws Exception {
+        Map<String,String> entries = new HashMap<String,String>();
+        entries.put("-runfw", "framework");
+        entries.put("-runee", "environment");
+        entries.put("-runbundles", "bundles");
+        entries.put("-buildpath", "build path");
+        entries.put("Bundle-Version", "version");
+        entries.put("Bundle-Name", null);
+        index = new CompletionIndex(entries);
+    }
+
+    public void testPrefix() throws Exception {
+        Map<String,String> matches = new TreeMap<String,String>();
+        index.collect("-run", matches);
+
+        assertEquals(3, matches.size());
+        assertEquals("framework", matches.get("-runfw"));
+        assertTrue(matches.containsKey("-runee"));
+        assertTrue(matches.containsKey("-runbundles"));
+    }
+
+    public void testEmptyPrefixMatchesAll() throws Exception {
+        Map<String,String> matches = new TreeMap<String,String>();
+        index.collect("", matches);
+
+        assertEquals(index.size(), matches.size());
+        assertTrue(matches.containsKey("Bundle-Name"));
+        assertNull(matches.get("Bundle-Name"));
+    }
+
+    public void testExactAndMissing() throws Exception {
+        Map<String,String> matches = new TreeMap<String,String>();
+        index.collect("-runfw", matches);
+        assertEquals(1, matches.size());
+
+        matches.clear();
+        index.collect("-runx", matches);
+        assertTrue(matches.isEmpty());
+
+        index.collect("Z", matches);
+        assertTrue(matches.isEmpty());
+    }
+
+    public void testExistingEntriesAreKept() throws Exception {
+        Map<String,String> matches = new LinkedHashMap<String,String>();
+        matches.put("-runfw", "workspace");
+        index.collect("-runf", matches);
+
+        assertEquals(1, matches.size());
+        assertEquals("workspace", matches.get("-runfw"));
+    }
+
+    public void testLargeIndex() throws Exception {
+        Map<String,String> entries = new HashMap<String,String>();
+        for (int i = 0; i < 100000; i++) {
+            entries.put("-property" + i, null);
+        }
+        CompletionIndex large = new CompletionIndex(entries);
+
+        Map<String,String> matches = new TreeMap<String,String>();
+        large.collect("-property9999", matches);
+        assertEquals(11, matches.size());
+    }
+}
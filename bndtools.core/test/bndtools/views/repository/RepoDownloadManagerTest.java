@@ -0,0 +1,132 @@
+package bndtools.views.repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import aQute.lib.io.IO;
+import bndtools.views.repository.RepoDownloadManager.Download;
+import bndtools.views.repository.RepoDownloadManager.Fetch;
+
+public class RepoDownloadManagerTest extends TestCase {
+
+    private File source;
+    private File cache;
+
+    @Override
+    protected void setUp() throws Exception {
+        source = new File("test/tests.provider.jar");
+        cache = File.createTempFile("download", "cache");
+        IO.delete(cache);
+        assertTrue(cache.mkdirs());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        IO.delete(cache);
+    }
+
+    public void testConcurrentDownloads() throws Exception {
+        SlowRepository repo = new SlowRepository("concurrent", 50);
+        // every fetch waits until two fetches have started, so the downloads must overlap
+        repo.overlap = new CountDownLatch(2);
+        List<Download> downloads = new ArrayList<Download>();
+        for (int i = 0; i < 8; i++) {
+            downloads.add(RepoDownloadManager.submit(repo, "concurrent:bundle" + i, 4, repo.fetch("bundle" + i)));
+        }
+        for (Download download : downloads) {
+            assertTrue(download.get().isFile());
+        }
+
+        assertEquals(8, repo.fetches.get());
+        int max = repo.maxConcurrent.get();
+        assertTrue("Downloads were not concurrent: " + max, max > 1);
+        assertTrue("Parallelism exceeded: " + max, max <= 4);
+    }
+
+    public void testParallelismIsPerRepository() throws Exception {
+        SlowRepository repo1 = new SlowRepository("repo1", 100);
+        SlowRepository repo2 = new SlowRepository("repo2", 100);
+        List<Download> downloads = new ArrayList<Download>();
+        for (int i = 0; i < 4; i++) {
+            downloads.add(RepoDownloadManager.submit(repo1, "repo1:bundle" + i, 1, repo1.fetch("bundle" + i)));
+            downloads.add(RepoDownloadManager.submit(repo2, "repo2:bundle" + i, 1, repo2.fetch("bundle" + i)));
+        }
+        for (Download download : downloads) {
+            download.get();
+        }
+
+        assertEquals(1, repo1.maxConcurrent.get());
+        assertEquals(1, repo2.maxConcurrent.get());
+    }
+
+    public void testInflightRequestsAreShared() throws Exception {
+        SlowRepository repo = new SlowRepository("shared", 200);
+        Download first = RepoDownloadManager.submit(repo, "shared:bundle;1.0.0", 4, repo.fetch("bundle"));
+        Download second = RepoDownloadManager.submit(repo, "shared:bundle;1.0.0", 4, repo.fetch("bundle"));
+
+        assertSame(first, second);
+        assertEquals(first.get(), second.get());
+        assertEquals(1, repo.fetches.get());
+
+        // once complete, a new request fetches again
+        Download third = RepoDownloadManager.submit(repo, "shared:bundle;1.0.0", 4, repo.fetch("bundle"));
+        third.get();
+        assertEquals(2, repo.fetches.get());
+    }
+
+    /**
+     * A file-backed repository which simulates network latency.
+     */
+    private class SlowRepository {
+        final String name;
+        final long latency;
+        final AtomicInteger fetches = new AtomicInteger();
+        final AtomicInteger concurrent = new AtomicInteger();
+        final AtomicInteger maxConcurrent = new AtomicInteger();
+        volatile CountDownLatch overlap;
+
+        SlowRepository(String name, long latency) {
+            this.name = name;
+            this.latency = latency;
+        }
+
+        Fetch fetch(final String bsn) {
+            return new Fetch() {
+                @Override
+                public File call() throws Exception {
+                    resourceName = bsn + ".jar";
+                    fetches.incrementAndGet();
+                    int now = concurrent.incrementAndGet();
+                    try {
+                        int max;
+                        while ((max = maxConcurrent.get()) < now && !maxConcurrent.compareAndSet(max, now)) {
+                            // retry
+                        }
+                        CountDownLatch latch = overlap;
+                        if (latch != null) {
+                            latch.countDown();
+                            latch.await(5, TimeUnit.SECONDS);
+                        }
+                        Thread.sleep(latency);
+                        return copy(resourceName);
+                    } finally {
+                        concurrent.decrementAndGet();
+                    }
+                }
+            };
+        }
+
+        private File copy(String resourceName) throws IOException {
+            File target = new File(cache, name + "-" + resourceName);
+            IO.copy(source, target);
+            return target;
+        }
+    }
+}
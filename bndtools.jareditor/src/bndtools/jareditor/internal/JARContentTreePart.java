@@ -10,13 +10,13 @@
  *******************************************************************************/
 package bndtools.jareditor.internal;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.util.Collection;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.Collections;
+import java.util.List;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
@@ -202,7 +202,8 @@ public class JARContentTreePart extends AbstractFormPart {
 
     private class JARTreeContentProvider implements ITreeContentProvider {
 
-        Map<String,ZipTreeNode> entryMap;
+        ZipArchive archive;
+        List<ZipTreeNode> roots = Collections.emptyList();
 
         public JARTreeContentProvider() {
             super();
@@ -226,55 +227,63 @@ public class JARContentTreePart extends AbstractFormPart {
 
         @Override
         public Object[] getElements(final Object inputElement) {
-            return entryMap.values().toArray();
+            return roots.toArray();
         }
 
         @Override
         public void dispose() {
+            releaseArchive();
         }
 
         @Override
         public void inputChanged(final Viewer viewer, final Object oldInput, final Object newInput) {
-            entryMap = new TreeMap<String,ZipTreeNode>();
-            final URI uri = URIHelper.retrieveFileURI((IEditorInput) newInput);
-            if (uri != null) {
-                ZipInputStream zis = null;
-                try {
-                    zis = new ZipInputStream(uri.toURL().openStream());
-                    ZipEntry entry;
-                    while ( (entry = zis.getNextEntry()) != null) {
-                        ZipTreeNode.addEntry(entryMap, entry);
-                    }
-                    zis.close();
-                }
-                catch (IOException e) {
-                    Status status = new Status(IStatus.ERROR,
-                                               PluginConstants.PLUGIN_ID,
-                                               0,
-                                               "I/O error reading JAR file contents",
-                                               e);
-                    ErrorDialog.openError(managedForm.getForm().getShell(), "Error", null, status);
+            // acquire before releasing, so an unchanged archive stays open
+            ZipArchive previous = archive;
+            archive = null;
+            roots = Collections.emptyList();
+            final URI uri = newInput == null ? null : URIHelper.retrieveFileURI((IEditorInput) newInput);
+            try {
+                if (uri != null) {
+                    archive = ZipArchive.acquire(new File(uri));
+                    roots = archive.getRoots();
                 }
-                finally {
-                    if (zis != null) {
-                        try {
-                            zis.close();
-                        }
-                        catch (IOException e) {
-                            // nothing to do
-                        }
-                    }
+            }
+            catch (IOException e) {
+                Status status = new Status(IStatus.ERROR,
+                                           PluginConstants.PLUGIN_ID,
+                                           0,
+                                           "I/O error reading JAR file contents",
+                                           e);
+                ErrorDialog.openError(managedForm.getForm().getShell(), "Error", null, status);
+            }
+            finally {
+                if (previous != null) {
+                    previous.release();
                 }
             }
         }
 
+        private void releaseArchive() {
+            if (archive != null) {
+                archive.release();
+                archive = null;
+            }
+            roots = Collections.emptyList();
+        }
+
         public TreePath findPath(final String[] path) {
             if ( (path == null) || (path.length == 0)) {
                 return null;
             }
 
             TreePath result = TreePath.EMPTY;
-            ZipTreeNode current = entryMap.get(path[0]);
+            ZipTreeNode current = null;
+            for (ZipTreeNode root : roots) {
+                if (path[0].equals(root.toString())) {
+                    current = root;
+                    break;
+                }
+            }
             if (current == null) {
                 return null;
             }
@@ -10,7 +10,6 @@ import java.nio.charset.Charset;
 import java.util.Iterator;
 import java.util.SortedMap;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -184,14 +183,15 @@ public class JAREntryPart extends AbstractFormPart implements IPartSelectionList
                     @Override
                     protected IStatus run(IProgressMonitor monitor) {
                         File ioFile = new File(uri);
-                        ZipFile zipFile = null;
+                        ZipArchive archive = null;
                         try {
-                            zipFile = new ZipFile(ioFile);
+                            // shares the archive opened by the content tree
+                            archive = ZipArchive.acquire(ioFile);
                             final StringWriter writer = new StringWriter();
                             if (showAsText)
-                                readAsText(zipFile, zipEntry, charsets[selectedCharset], writer, 1024 * 20, monitor);
+                                readAsText(archive, zipEntry, charsets[selectedCharset], writer, 1024 * 20, monitor);
                             else
-                                readAsHex(zipFile, zipEntry, writer, 1024 * 20, 2, monitor);
+                                readAsHex(archive, zipEntry, writer, 1024 * 20, 2, monitor);
 
                             display.asyncExec(new Runnable() {
                                 public void run() {
@@ -205,13 +205,8 @@ public class JAREntryPart extends AbstractFormPart implements IPartSelectionList
                             // ErrorDialog.openError(getManagedForm().getForm().getShell(), "Error", null, status);
                             return status;
                         } finally {
-                            try {
-                                if (zipFile != null)
-                                    zipFile.close();
-                            } catch (IOException e) {
-                                // TODO Auto-generated catch block
-                                e.printStackTrace();
-                            }
+                            if (archive != null)
+                                archive.release();
                         }
                     }
                 };
@@ -243,11 +238,11 @@ public class JAREntryPart extends AbstractFormPart implements IPartSelectionList
         return progress;
     }
 
-    protected static void readAsText(ZipFile zipFile, ZipEntry entry, String encoding, Writer out, long limit, IProgressMonitor monitor) throws IOException {
+    protected static void readAsText(ZipArchive archive, ZipEntry entry, String encoding, Writer out, long limit, IProgressMonitor monitor) throws IOException {
         SubMonitor progress = createProgressMonitor(entry, limit, monitor);
 
         boolean limitReached = false;
-        InputStream stream = zipFile.getInputStream(entry);
+        InputStream stream = archive.getInputStream(entry);
         try {
             long total = 0;
 
@@ -285,7 +280,7 @@ public class JAREntryPart extends AbstractFormPart implements IPartSelectionList
         return (char) b;
     }
 
-    protected static void readAsHex(ZipFile zipFile, ZipEntry entry, Writer out, long limit, int groupsOf8BytesPerLine, IProgressMonitor monitor) throws IOException {
+    protected static void readAsHex(ZipArchive archive, ZipEntry entry, Writer out, long limit, int groupsOf8BytesPerLine, IProgressMonitor monitor) throws IOException {
         SubMonitor progress = createProgressMonitor(entry, limit, monitor);
 
         boolean limitReached = false;
@@ -296,7 +291,7 @@ public class JAREntryPart extends AbstractFormPart implements IPartSelectionList
         int bytePosition = 0;
         byte[] buffer = new byte[1024];
 
-        InputStream stream = zipFile.getInputStream(entry);
+        InputStream stream = archive.getInputStream(entry);
         try {
             long total = 0;
 
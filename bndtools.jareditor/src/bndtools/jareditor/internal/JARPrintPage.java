@@ -4,22 +4,61 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.PrintStream;
 import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.resource.JFaceResources;
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Text;
 import org.eclipse.ui.forms.editor.FormEditor;
 import org.eclipse.ui.forms.editor.FormPage;
 
+import aQute.bnd.osgi.Jar;
+import aQute.lib.io.IO;
+import bndtools.jareditor.internal.utils.SWTConcurrencyUtil;
+
 public class JARPrintPage extends FormPage {
 
+    /* Printer.METATYPE throws an NPE */
+    private static final int[] SECTIONS = {
+            Printer.VERIFY | Printer.MANIFEST, Printer.IMPEXP, Printer.COMPONENT, Printer.LIST
+    };
+    /* The uses need an analysis of the classes, so are only printed on request */
+    private static final int[] USES_SECTIONS = {
+            Printer.USES | Printer.USEDBY
+    };
+
+    private static final int MAX_CACHED = 64;
+    private static final Map<String,String> cache = new LinkedHashMap<String,String>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String,String> eldest) {
+            return size() > MAX_CACHED;
+        }
+    };
+
+    private Display display;
+    private Composite composite;
     private Text text;
+    private Button btnUses;
 
     private boolean loaded = false;
+    private File file;
+    private PrintJob job;
+    private int generation;
 
     public JARPrintPage(FormEditor formEditor, String id, String title) {
         super(formEditor, id, title);
@@ -27,14 +66,33 @@ public class JARPrintPage extends FormPage {
 
     @Override
     public void createPartControl(Composite parent) {
-        text = new Text(parent, SWT.NONE | SWT.H_SCROLL | SWT.V_SCROLL);
+        display = parent.getDisplay();
+        composite = new Composite(parent, SWT.NONE);
+        GridLayout layout = new GridLayout(1, false);
+        layout.marginWidth = 0;
+        layout.marginHeight = 0;
+        composite.setLayout(layout);
+
+        btnUses = new Button(composite, SWT.PUSH);
+        btnUses.setText("Show Package Uses");
+        btnUses.setEnabled(false);
+        btnUses.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                btnUses.setEnabled(false);
+                print(USES_SECTIONS);
+            }
+        });
+
+        text = new Text(composite, SWT.NONE | SWT.H_SCROLL | SWT.V_SCROLL);
         text.setEditable(false);
         text.setFont(JFaceResources.getTextFont());
+        text.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true));
     }
 
     @Override
     public Control getPartControl() {
-        return text;
+        return composite;
     }
 
     @Override
@@ -45,12 +103,24 @@ public class JARPrintPage extends FormPage {
         }
     }
 
+    @Override
+    public void dispose() {
+        if (job != null)
+            job.cancel();
+        super.dispose();
+    }
+
     public void refresh() {
-        URI uri = null;
         try {
-            uri = URIHelper.retrieveFileURI(getEditorInput());
+            URI uri = URIHelper.retrieveFileURI(getEditorInput());
             if (uri != null) {
-                text.setText(print(new File(uri)));
+                file = new File(uri);
+                if (job != null)
+                    job.cancel();
+                generation++;
+                text.setText("");
+                btnUses.setEnabled(false);
+                print(SECTIONS);
             }
         } catch (Exception e) {
             Plugin.getDefault().getLog().log(new Status(IStatus.ERROR, Plugin.PLUGIN_ID, 0, "Error outputing JAR content display.", e));
@@ -59,23 +129,88 @@ public class JARPrintPage extends FormPage {
         }
     }
 
-    private static String print(File file) throws Exception {
-        Printer printer = new Printer();
-        ByteArrayOutputStream bos = null;
-        try {
-            bos = new ByteArrayOutputStream();
-            printer.setOut(new PrintStream(bos, false, "UTF-8"));
+    private void print(int[] sections) {
+        job = new PrintJob(file, sections, generation);
+        job.schedule();
+    }
 
-            /* Printer.METATYPE throws an NPE */
-            int options = Printer.VERIFY | Printer.MANIFEST | Printer.LIST | Printer.IMPEXP | Printer.USES | Printer.USEDBY | Printer.COMPONENT;
+    private void printed(final PrintJob source, final String output) {
+        SWTConcurrencyUtil.execForDisplay(display, new Runnable() {
+            @Override
+            public void run() {
+                // a refresh clears the text and starts a new generation
+                if (text.isDisposed() || source.generation != generation)
+                    return;
+                if (output != null)
+                    text.append(output);
+                else if (source.sections == SECTIONS)
+                    btnUses.setEnabled(true);
+            }
+        });
+    }
 
-            printer.doPrint(file.getAbsolutePath(), options);
+    private static String print(Printer printer, Jar jar, int section) throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try {
+            printer.setOut(new PrintStream(bos, false, "UTF-8"));
+            printer.doPrint(jar, section);
             return new String(bos.toByteArray(), "UTF-8");
         } finally {
-            if (bos != null) {
-                bos.close();
+            bos.close();
+        }
+    }
+
+    /**
+     * Prints sections of a JAR in the background and appends them to the text as they complete. Sections are cached
+     * per file, timestamp and section.
+     */
+    private class PrintJob extends Job {
+        private final File file;
+        private final int[] sections;
+        private final int generation;
+
+        PrintJob(File file, int[] sections, int generation) {
+            super("Printing " + file.getName());
+            this.file = file;
+            this.sections = sections;
+            this.generation = generation;
+            setSystem(true);
+        }
+
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            long lastModified = file.lastModified();
+            Printer printer = new Printer();
+            Jar jar = null;
+            try {
+                for (int section : sections) {
+                    if (monitor.isCanceled())
+                        return Status.CANCEL_STATUS;
+
+                    String key = file.getAbsolutePath() + ";" + lastModified + ";" + section;
+                    String output;
+                    synchronized (cache) {
+                        output = cache.get(key);
+                    }
+                    if (output == null) {
+                        if (jar == null)
+                            jar = new Jar(file.getName(), file);
+                        output = print(printer, jar, section);
+                        synchronized (cache) {
+                            cache.put(key, output);
+                        }
+                    }
+                    printed(this, output);
+                }
+                printed(this, null);
+            } catch (Exception e) {
+                return new Status(IStatus.ERROR, Plugin.PLUGIN_ID, 0, "Error outputing JAR content display.", e);
+            } finally {
+                if (jar != null)
+                    jar.close();
+                IO.close(printer);
             }
-            printer.close();
+            return Status.OK_STATUS;
         }
     }
 }
@@ -0,0 +1,134 @@
+package bndtools.jareditor.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A shared, reference counted view of a ZIP file.
+ * <p>
+ * The archive is read through {@link ZipFile}, which only reads the central directory when it is opened and reads
+ * entries with random access. The entry names are kept in a sorted array; the names in a directory are a contiguous
+ * range of the array, so the children of a directory are calculated when it is expanded by binary searches rather
+ * than by building a tree of the whole archive up front.
+ * <p>
+ * Archives are shared per file while the file is unchanged. Each {@link #acquire(File)} must be matched by a
+ * {@link #release()}; the ZIP file is closed when the last reference is released.
+ */
+final class ZipArchive {
+
+    private static final Map<String,ZipArchive> archives = new HashMap<String,ZipArchive>();
+
+    private final String path;
+    private final long lastModified;
+    private final long length;
+    private final ZipFile zipFile;
+    private final String[] names;
+    private int references;
+
+    private ZipArchive(File file) throws IOException {
+        this.path = file.getAbsolutePath();
+        this.lastModified = file.lastModified();
+        this.length = file.length();
+        this.zipFile = new ZipFile(file);
+
+        List<String> list = new ArrayList<String>(zipFile.size());
+        for (Enumeration< ? extends ZipEntry> entries = zipFile.entries(); entries.hasMoreElements();) {
+            list.add(entries.nextElement().getName());
+        }
+        names = list.toArray(new String[list.size()]);
+        Arrays.sort(names);
+    }
+
+    /**
+     * Acquire the archive of a file.
+     */
+    static ZipArchive acquire(File file) throws IOException {
+        String path = file.getAbsolutePath();
+        synchronized (archives) {
+            ZipArchive archive = archives.get(path);
+            if (archive == null || archive.lastModified != file.lastModified() || archive.length != file.length()) {
+                // a replaced archive stays open until its last reference is released
+                archive = new ZipArchive(file);
+                archives.put(path, archive);
+            }
+            archive.references++;
+            return archive;
+        }
+    }
+
+    /**
+     * Release a reference acquired with {@link #acquire(File)}.
+     */
+    void release() {
+        synchronized (archives) {
+            if (--references > 0)
+                return;
+            if (archives.get(path) == this)
+                archives.remove(path);
+        }
+        try {
+            zipFile.close();
+        } catch (IOException e) {
+            // nothing to do
+        }
+    }
+
+    ZipEntry getEntry(String name) {
+        return zipFile.getEntry(name);
+    }
+
+    InputStream getInputStream(ZipEntry entry) throws IOException {
+        return zipFile.getInputStream(entry);
+    }
+
+    /**
+     * Return the top level nodes of the archive.
+     */
+    List<ZipTreeNode> getRoots() {
+        return getChildren(null, "");
+    }
+
+    boolean hasChildren(String directory) {
+        int i = lowerBound(directory);
+        if (i < names.length && names[i].equals(directory))
+            i++;
+        return i < names.length && names[i].startsWith(directory);
+    }
+
+    /**
+     * Return the nodes of the entries and directories directly in a directory.
+     */
+    List<ZipTreeNode> getChildren(ZipTreeNode parent, String directory) {
+        List<ZipTreeNode> children = new ArrayList<ZipTreeNode>();
+        int i = lowerBound(directory);
+        while (i < names.length && names[i].startsWith(directory)) {
+            String name = names[i];
+            int slash = name.indexOf('/', directory.length());
+            if (slash < 0) {
+                if (name.length() > directory.length())
+                    children.add(new ZipTreeNode(this, parent, name));
+                i++;
+            } else {
+                // a subdirectory, with or without an entry of its own
+                String subdirectory = slash == name.length() - 1 ? name : name.substring(0, slash + 1);
+                children.add(new ZipTreeNode(this, parent, subdirectory));
+                i = lowerBound(subdirectory + Character.MAX_VALUE);
+            }
+        }
+        return children;
+    }
+
+    private int lowerBound(String key) {
+        int i = Arrays.binarySearch(names, key);
+        return i < 0 ? -i - 1 : i;
+    }
+}
@@ -12,10 +12,7 @@ package bndtools.jareditor.internal;
 
 import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.jar.JarEntry;
 import java.util.zip.ZipEntry;
 
@@ -23,15 +20,15 @@ import org.eclipse.core.runtime.IAdaptable;
 
 class ZipTreeNode implements IAdaptable {
 
+    private final ZipArchive archive;
     private final ZipTreeNode parent;
-    private final String name;
-    private final ZipEntry entry;
-    private final Map<String,ZipTreeNode> children = new LinkedHashMap<String,ZipTreeNode>();
+    private final String path;
+    private List<ZipTreeNode> children;
 
-    private ZipTreeNode(ZipTreeNode parent, String name, ZipEntry entry) {
+    ZipTreeNode(ZipArchive archive, ZipTreeNode parent, String path) {
+        this.archive = archive;
         this.parent = parent;
-        this.name = name;
-        this.entry = entry;
+        this.path = path;
     }
 
     public ZipTreeNode getParent() {
@@ -39,62 +36,39 @@ class ZipTreeNode implements IAdaptable {
     }
 
     public boolean hasChildren() {
-        return !children.isEmpty();
+        if (children != null)
+            return !children.isEmpty();
+        return isDirectory() && archive.hasChildren(path);
     }
 
     public Collection<ZipTreeNode> getChildren() {
-        return Collections.unmodifiableCollection(children.values());
+        if (children == null)
+            children = isDirectory() ? archive.getChildren(this, path) : Collections.<ZipTreeNode> emptyList();
+        return Collections.unmodifiableCollection(children);
     }
 
     public ZipEntry getZipEntry() {
-        return entry;
+        return archive.getEntry(path);
     }
 
-    @Override
-    public String toString() {
-        return name;
-
+    public ZipArchive getArchive() {
+        return archive;
     }
 
-    public static void addEntry(Map<String,ZipTreeNode> rootMap, ZipEntry entry) {
-        List<String> path = getPath(entry);
-        pushEntry(null, rootMap, path, entry);
-    }
-
-    private static void pushEntry(ZipTreeNode parent, Map<String,ZipTreeNode> map, List<String> path, ZipEntry entry) {
-        String pathPart = path.remove(0);
-        ZipTreeNode node = map.get(pathPart);
-        if (node == null) {
-            node = new ZipTreeNode(parent, pathPart, path.isEmpty() ? entry : null);
-            map.put(pathPart, node);
-        }
-        if (!path.isEmpty())
-            pushEntry(node, node.children, path, entry);
+    private boolean isDirectory() {
+        return path.endsWith("/");
     }
 
-    private static List<String> getPath(ZipEntry entry) {
-        List<String> path = new LinkedList<String>();
-
-        String name = entry.getName();
-        int index = 0;
-        while (index < name.length()) {
-            int nextSlash = name.indexOf('/', index);
-
-            if (nextSlash == -1) {
-                path.add(name.substring(index));
-                break;
-            }
-            path.add(name.substring(index, nextSlash + 1));
-            index = nextSlash + 1;
-        }
-
-        return path;
+    @Override
+    public String toString() {
+        int start = parent == null ? 0 : parent.path.length();
+        return path.substring(start);
     }
 
     public Object getAdapter(@SuppressWarnings("rawtypes")
     Class adapter) {
         if (adapter == JarEntry.class) {
-            return entry;
+            return getZipEntry();
         }
         return null;
     }
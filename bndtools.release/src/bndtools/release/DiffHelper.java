@@ -10,6 +10,7 @@
  *******************************************************************************/
 package bndtools.release;
 
+import java.io.File;
 import java.util.List;
 
 import aQute.bnd.build.Project;
@@ -43,7 +44,8 @@ public class DiffHelper {
 		try {
 
 			if (builder instanceof ProjectBuilder) {
-				Jar jar = builder.build();
+				Jar existing = getExistingBuild((ProjectBuilder) builder);
+				Jar jar = existing != null ? existing : builder.build();
 
 				Jar currentJar = ((ProjectBuilder) builder).getLastRevision();
 				if (currentJar == null) {
@@ -57,7 +59,13 @@ public class DiffHelper {
 
 				Baseline baseline = new Baseline(builder, differ);
 
-				baseline.baseline(jar, currentJar, null);
+				try {
+					baseline.baseline(jar, currentJar, null);
+				} finally {
+					if (existing != null) {
+						existing.close();
+					}
+				}
 				return baseline;
 			}
 		} catch (Exception e1) {
@@ -67,6 +75,36 @@ public class DiffHelper {
 
 	}
 
+	/*
+	 * Use the bundle last built for the project instead of building it again,
+	 * as long as the project is not stale: its bnd files, compiled classes,
+	 * build path, included resources and upstream projects are all older than
+	 * its build files.
+	 */
+	private static Jar getExistingBuild(ProjectBuilder builder) throws Exception {
+		Project project = builder.getProject();
+		if (project.isStale()) {
+			return null;
+		}
+		File[] buildFiles = project.getBuildFiles(false);
+		if (buildFiles == null) {
+			return null;
+		}
+
+		String bsn = builder.getBsn();
+		for (File buildFile : buildFiles) {
+			if (!buildFile.isFile()) {
+				continue;
+			}
+			Jar jar = new Jar(buildFile);
+			if (bsn.equals(jar.getBsn())) {
+				return jar;
+			}
+			jar.close();
+		}
+		return null;
+	}
+
 	public static String removeVersionQualifier(String version) {
 		if (version == null) {
 			return null;
@@ -10,10 +10,26 @@
  *******************************************************************************/
 package bndtools.release;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.ResourcesPlugin;
@@ -28,16 +44,18 @@ import org.eclipse.swt.widgets.Shell;
 import org.eclipse.ui.PlatformUI;
 
 import aQute.bnd.build.Project;
-import aQute.bnd.build.Workspace;
 import aQute.bnd.differ.Baseline;
 import aQute.bnd.osgi.Builder;
 import aQute.bnd.osgi.Constants;
+import bndtools.central.Central;
 import bndtools.release.api.ReleaseUtils;
 import bndtools.release.nl.Messages;
 import bndtools.release.ui.WorkspaceReleaseDialog;
 
 public class WorkspaceAnalyserJob extends Job {
 
+    private static final int PARALLELISM = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
     protected final Shell shell;
     protected final Set<IProject> projects;
 
@@ -60,47 +78,16 @@ public class WorkspaceAnalyserJob extends Job {
 
             mon.beginTask(Messages.workspaceReleaseJob, projects.size() * 2);
 
-            List<Project> orderedProjects = getBuildOrder(mon, Activator.getWorkspace());
+            Map<Project,Collection<Project>> dependencies = getDependencies(mon, projects);
+            List<Project> orderedProjects = getBuildOrder(dependencies);
             if (mon.isCanceled()) {
                 return Status.CANCEL_STATUS;
             }
 
             final List<ProjectDiff> projectDiffs = new ArrayList<ProjectDiff>();
             mon.setTaskName(Messages.processingProjects);
-            for (Project project : orderedProjects) {
-                IProject eProject = ReleaseUtils.getProject(project);
-                if (!isIncluded(eProject)) {
-                    mon.worked(1);
-                    continue;
-                }
-                if ("".equals(project.getProperty(Constants.RELEASEREPO, null))) {
-                    mon.worked(1);
-                    continue;
-                }
-                if (eProject == null || !eProject.isOpen() || !eProject.isAccessible()) {
-                    mon.worked(1);
-                    continue;
-                }
-                List<Builder> builders = project.getBuilder(null).getSubBuilders();
-                List<Baseline> jarDiffs = null;
-                for (Builder b : builders) {
-                    mon.subTask(String.format(Messages.processingProject, b.getBsn()));
-
-                    Baseline jarDiff = DiffHelper.createBaseline(project, b.getBsn());
-                    if (jarDiff != null) {
-                        if (jarDiffs == null) {
-                            jarDiffs = new ArrayList<Baseline>();
-                        }
-                        jarDiffs.add(jarDiff);
-                    }
-                }
-                if (jarDiffs != null && jarDiffs.size() > 0) {
-                    projectDiffs.add(new ProjectDiff(project, jarDiffs));
-                }
-                if (mon.isCanceled()) {
-                    return Status.CANCEL_STATUS;
-                }
-                mon.worked(1);
+            if (!analyse(mon, orderedProjects, dependencies, projectDiffs)) {
+                return Status.CANCEL_STATUS;
             }
 
             if (projectDiffs.size() == 0) {
@@ -155,38 +142,175 @@ public class WorkspaceAnalyserJob extends Job {
         return Status.OK_STATUS;
     }
 
-    private static List<Project> getBuildOrder(IProgressMonitor monitor, Workspace workspace) throws Exception {
+    /*
+     * Create the baselines of the included projects in build order. The
+     * projects are analysed on a worker pool; a project is analysed once the
+     * projects it depends on are done, so projects are never analysed while
+     * a project they read from is being built.
+     */
+    private boolean analyse(final IProgressMonitor mon, List<Project> orderedProjects, Map<Project,Collection<Project>> dependencies, List<ProjectDiff> projectDiffs) throws Exception {
+        Map<Project,Future<List<Baseline>>> analyses = new LinkedHashMap<Project,Future<List<Baseline>>>();
+        ExecutorService executor = Executors.newFixedThreadPool(PARALLELISM, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
 
-        List<Project> outlist = new ArrayList<Project>();
-        monitor.setTaskName(Messages.calculatingBuildPath);
-        for (Project project : workspace.getAllProjects()) {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Release analysis " + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        try {
+            for (final Project project : orderedProjects) {
+                IProject eProject = ReleaseUtils.getProject(project);
+                if (!isIncluded(eProject)) {
+                    continue;
+                }
+                if ("".equals(project.getProperty(Constants.RELEASEREPO, null))) {
+                    continue;
+                }
+                if (eProject == null || !eProject.isOpen() || !eProject.isAccessible()) {
+                    continue;
+                }
 
-            monitor.subTask(String.format(Messages.resolvingDependenciesForProject, project.getName()));
-            Collection<Project> dependsOn = project.getDependson();
+                // tasks are queued in build order, so dependencies are queued first
+                final List<Future<List<Baseline>>> prerequisites = new ArrayList<Future<List<Baseline>>>();
+                for (Project dependency : dependencies.get(project)) {
+                    Future<List<Baseline>> prerequisite = analyses.get(dependency);
+                    if (prerequisite != null) {
+                        prerequisites.add(prerequisite);
+                    }
+                }
+                analyses.put(project, executor.submit(new Callable<List<Baseline>>() {
+                    @Override
+                    public List<Baseline> call() throws Exception {
+                        for (Future<List<Baseline>> prerequisite : prerequisites) {
+                            try {
+                                prerequisite.get();
+                            } catch (ExecutionException e) {
+                                // reported by the prerequisite
+                            }
+                        }
+                        return createBaselines(project, mon);
+                    }
+                }));
+            }
 
-            getBuildOrder(dependsOn, outlist);
+            mon.worked(orderedProjects.size() - analyses.size());
+            for (Map.Entry<Project,Future<List<Baseline>>> analysis : analyses.entrySet()) {
+                mon.subTask(String.format(Messages.processingProject, analysis.getKey().getName()));
+                List<Baseline> jarDiffs = null;
+                while (jarDiffs == null) {
+                    if (mon.isCanceled()) {
+                        return false;
+                    }
+                    try {
+                        jarDiffs = analysis.getValue().get(200, TimeUnit.MILLISECONDS);
+                    } catch (TimeoutException e) {
+                        continue;
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        throw cause instanceof Exception ? (Exception) cause : e;
+                    }
+                }
+                if (jarDiffs.size() > 0) {
+                    projectDiffs.add(new ProjectDiff(analysis.getKey(), jarDiffs));
+                }
+                mon.worked(1);
+            }
+            return true;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-            if (!outlist.contains(project)) {
-                outlist.add(project);
+    /*
+     * The project may have to be built to create its baselines, so this is
+     * done while holding the lock of the project.
+     */
+    private static List<Baseline> createBaselines(final Project project, IProgressMonitor monitor) throws Exception {
+        return Central.bndCall(project, new Callable<List<Baseline>>() {
+            @Override
+            public List<Baseline> call() throws Exception {
+                List<Baseline> jarDiffs = new ArrayList<Baseline>();
+                for (Builder b : project.getBuilder(null).getSubBuilders()) {
+                    Baseline jarDiff = DiffHelper.createBaseline(b);
+                    if (jarDiff != null) {
+                        jarDiffs.add(jarDiff);
+                    }
+                }
+                return jarDiffs;
             }
+        }, monitor);
+    }
+
+    private static Map<Project,Collection<Project>> getDependencies(IProgressMonitor monitor, Collection<Project> projects) throws Exception {
+        Map<Project,Collection<Project>> dependencies = new LinkedHashMap<Project,Collection<Project>>();
+        monitor.setTaskName(Messages.calculatingBuildPath);
+        for (Project project : projects) {
+            monitor.subTask(String.format(Messages.resolvingDependenciesForProject, project.getName()));
+            dependencies.put(project, project.getDependson());
             monitor.worked(1);
         }
-        return outlist;
+        return dependencies;
     }
 
-    private static void getBuildOrder(Collection<Project> dependsOn, List<Project> outlist) throws Exception {
+    /*
+     * Sort the projects topologically so every project comes after the
+     * projects it depends on. Projects in a dependency cycle are added at the
+     * end in workspace order.
+     */
+    private static List<Project> getBuildOrder(Map<Project,Collection<Project>> dependencies) {
+        Map<Project,Integer> pending = new HashMap<Project,Integer>();
+        Map<Project,List<Project>> dependents = new HashMap<Project,List<Project>>();
+        Deque<Project> ready = new ArrayDeque<Project>();
+        for (Map.Entry<Project,Collection<Project>> entry : dependencies.entrySet()) {
+            Project project = entry.getKey();
+            int count = 0;
+            for (Project dependency : new LinkedHashSet<Project>(entry.getValue())) {
+                if (dependency == project || !dependencies.containsKey(dependency)) {
+                    continue;
+                }
+                List<Project> list = dependents.get(dependency);
+                if (list == null) {
+                    list = new ArrayList<Project>();
+                    dependents.put(dependency, list);
+                }
+                list.add(project);
+                count++;
+            }
+            pending.put(project, count);
+            if (count == 0) {
+                ready.add(project);
+            }
+        }
 
-        for (Project project : dependsOn) {
-            Collection<Project> subProjects = project.getDependson();
-            for (Project subProject : subProjects) {
-                if (!outlist.contains(subProject)) {
-                    outlist.add(subProject);
+        List<Project> order = new ArrayList<Project>(dependencies.size());
+        while (!ready.isEmpty()) {
+            Project project = ready.removeFirst();
+            order.add(project);
+            List<Project> list = dependents.get(project);
+            if (list == null) {
+                continue;
+            }
+            for (Project dependent : list) {
+                int count = pending.get(dependent) - 1;
+                pending.put(dependent, count);
+                if (count == 0) {
+                    ready.add(dependent);
                 }
             }
-            if (!outlist.contains(project)) {
-                outlist.add(project);
+        }
+
+        if (order.size() < dependencies.size()) {
+            Set<Project> ordered = new HashSet<Project>(order);
+            for (Project project : dependencies.keySet()) {
+                if (!ordered.contains(project)) {
+                    order.add(project);
+                }
             }
         }
+        return order;
     }
 
     protected boolean isIncluded(IProject project) {
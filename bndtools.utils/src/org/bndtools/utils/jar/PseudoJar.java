@@ -5,23 +5,41 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.Deque;
+import java.util.Enumeration;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 import java.util.jar.JarInputStream;
 import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 /**
  * A utility for reading either JAR files or directories that have the same layout as a JAR file.
+ * <p>
+ * Entries can be read sequentially with {@link #nextEntry()} or looked up directly with {@link #getEntry(String)} and
+ * {@link #hasPrefix(String)}. The random access methods use the central directory of a JAR file, so they do not need
+ * to inflate the entries before the one of interest.
  */
 public class PseudoJar implements Closeable {
 
+    private static final Comparator<File> NAME_ORDER = new Comparator<File>() {
+        @Override
+        public int compare(File f1, File f2) {
+            return f1.getName().compareTo(f2.getName());
+        }
+    };
+
     private final File base;
 
     private JarInputStream jarStream = null;
+    private ZipFile zipFile = null;
+    private String[] zipNames = null;
     private Iterator<String> dirIndex = null;
 
     private JarEntry lastJarEntry = null;
@@ -41,6 +59,16 @@ public class PseudoJar implements Closeable {
         jarStream = new JarInputStream(new FileInputStream(base));
     }
 
+    private void initZipFile() throws IOException {
+        if (zipFile != null)
+            return;
+
+        if (!base.isFile())
+            throw new IOException("Cannot read as JAR, file does not exist or is not a plain file: " + base);
+
+        zipFile = new ZipFile(base);
+    }
+
     private void initDirIndex() throws IOException {
         if (dirIndex != null)
             return;
@@ -48,30 +76,69 @@ public class PseudoJar implements Closeable {
         if (!base.isDirectory())
             throw new IOException("Cannot read as directory, does not exist or is not a plain directory: " + base);
 
-        List<String> tmpIndex = new LinkedList<String>();
-        index("", base, tmpIndex);
-        dirIndex = tmpIndex.iterator();
+        dirIndex = new DirectoryWalker(base);
     }
 
-    private static void index(String prefix, File dir, List<String> index) {
-        File[] children = dir.listFiles();
-        Arrays.sort(children, new Comparator<File>() {
-            @Override
-            public int compare(File f1, File f2) {
-                return f1.getName().compareTo(f2.getName());
-            }
-        });
-        if (children != null)
-            for (File child : children) {
-                String path = prefix + child.getName();
-                if (child.isDirectory())
-                    path += "/";
+    /**
+     * Walks a directory lazily in the same order as a sorted recursive listing, so that only the directories on the
+     * path to the current entry are listed.
+     */
+    private static class DirectoryWalker implements Iterator<String> {
+        private final Deque<Iterator<File>> children = new ArrayDeque<Iterator<File>>();
+        private final Deque<String> prefixes = new ArrayDeque<String>();
+        private String next;
+
+        DirectoryWalker(File dir) {
+            push("", dir);
+            next = advance();
+        }
 
-                index.add(path);
+        private void push(String prefix, File dir) {
+            File[] list = dir.listFiles();
+            if (list == null)
+                return;
+            Arrays.sort(list, NAME_ORDER);
+            children.push(Arrays.asList(list).iterator());
+            prefixes.push(prefix);
+        }
 
-                if (child.isDirectory())
-                    index(path, child, index);
+        private String advance() {
+            while (!children.isEmpty()) {
+                Iterator<File> it = children.peek();
+                if (!it.hasNext()) {
+                    children.pop();
+                    prefixes.pop();
+                    continue;
+                }
+                File child = it.next();
+                String path = prefixes.peek() + child.getName();
+                if (child.isDirectory()) {
+                    path += "/";
+                    push(path, child);
+                }
+                return path;
             }
+            return null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if (next == null)
+                throw new NoSuchElementException();
+            String result = next;
+            next = advance();
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
     }
 
     public Manifest readManifest() throws IOException {
@@ -84,13 +151,87 @@ public class PseudoJar implements Closeable {
             } finally {
                 in.close();
             }
-        } else {
-            initJarStream();
+        } else if (jarStream != null) {
             mf = jarStream.getManifest();
+        } else {
+            InputStream in = getEntry(JarFile.MANIFEST_NAME);
+            if (in == null)
+                return null;
+            try {
+                mf = new Manifest(in);
+            } finally {
+                in.close();
+            }
         }
         return mf;
     }
 
+    /**
+     * Open an entry directly.
+     *
+     * @param name
+     *            The name of the entry, using '/' as separator.
+     * @return A stream for the content of the entry, which the caller must close, or {@code null} if there is no such
+     *         entry.
+     */
+    public InputStream getEntry(String name) throws IOException {
+        if (base.isDirectory()) {
+            File file = new File(base, name);
+            return file.isFile() ? new FileInputStream(file) : null;
+        }
+
+        initZipFile();
+        ZipEntry entry = zipFile.getEntry(name);
+        if (entry == null || entry.isDirectory())
+            return null;
+        return zipFile.getInputStream(entry);
+    }
+
+    /**
+     * Check whether any entry starts with the specified prefix, for example {@code OSGI-OPT/src/}.
+     *
+     * @param prefix
+     *            The prefix, using '/' as separator.
+     * @return {@code true} if there is at least one entry whose name starts with the prefix.
+     */
+    public boolean hasPrefix(String prefix) throws IOException {
+        if (base.isDirectory()) {
+            int n = prefix.lastIndexOf('/');
+            File dir = n < 0 ? base : new File(base, prefix.substring(0, n));
+            String namePrefix = prefix.substring(n + 1);
+            if (!dir.isDirectory())
+                return false;
+            if (namePrefix.isEmpty())
+                return true;
+            String[] names = dir.list();
+            if (names != null)
+                for (String name : names) {
+                    if (name.startsWith(namePrefix))
+                        return true;
+                }
+            return false;
+        }
+
+        initZipFile();
+        if (zipFile.getEntry(prefix) != null)
+            return true;
+        if (zipNames == null) {
+            zipNames = new String[zipFile.size()];
+            int i = 0;
+            for (Enumeration< ? extends ZipEntry> entries = zipFile.entries(); entries.hasMoreElements() && i < zipNames.length;) {
+                zipNames[i++] = entries.nextElement().getName();
+            }
+            if (i < zipNames.length)
+                zipNames = Arrays.copyOf(zipNames, i);
+            Arrays.sort(zipNames);
+        }
+        int n = Arrays.binarySearch(zipNames, prefix);
+        if (n >= 0)
+            return true;
+        n = -(n + 1);
+        return n < zipNames.length && zipNames[n].startsWith(prefix);
+    }
+
     public String nextEntry() throws IOException {
         String path;
 
@@ -156,8 +297,13 @@ public class PseudoJar implements Closeable {
 
     @Override
     public void close() throws IOException {
-        if (jarStream != null)
-            jarStream.close();
+        try {
+            if (jarStream != null)
+                jarStream.close();
+        } finally {
+            if (zipFile != null)
+                zipFile.close();
+        }
     }
 
 }
@@ -1,6 +1,10 @@
 package org.bndtools.utils.jar;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
 
 import aQute.lib.io.IO;
@@ -46,4 +50,109 @@ public class PseudoJarTest extends TestCase {
             pj.close();
         }
     }
+
+    public void testGetEntryJarFile() throws Exception {
+        PseudoJar pj = new PseudoJar(new File("testdata/hello.jar"));
+        try {
+            assertEquals("Hello World", IO.collect(pj.getEntry("OSGI-INF/hello.txt")));
+            assertEquals("Goodbye World", IO.collect(pj.getEntry("OSGI-INF/goodbye.txt")));
+            assertNull(pj.getEntry("OSGI-INF/missing.txt"));
+            assertNull(pj.getEntry("OSGI-INF/"));
+
+            Manifest mf = pj.readManifest();
+            assertEquals("jellyfish", mf.getMainAttributes().getValue("Arbitrary-Header"));
+        } finally {
+            pj.close();
+        }
+    }
+
+    public void testGetEntryDir() throws Exception {
+        PseudoJar pj = new PseudoJar(new File("testdata/hello_jar_dir"));
+        try {
+            assertEquals("Hello World", IO.collect(pj.getEntry("OSGI-INF/hello.txt")));
+            assertNull(pj.getEntry("OSGI-INF/missing.txt"));
+            assertNull(pj.getEntry("OSGI-INF"));
+        } finally {
+            pj.close();
+        }
+    }
+
+    public void testHasPrefixJarFile() throws Exception {
+        PseudoJar pj = new PseudoJar(new File("testdata/hello.jar"));
+        try {
+            assertTrue(pj.hasPrefix("OSGI-INF/"));
+            assertTrue(pj.hasPrefix("OSGI-INF/hel"));
+            assertFalse(pj.hasPrefix("OSGI-OPT/src/"));
+        } finally {
+            pj.close();
+        }
+    }
+
+    public void testHasPrefixDir() throws Exception {
+        PseudoJar pj = new PseudoJar(new File("testdata/hello_jar_dir"));
+        try {
+            assertTrue(pj.hasPrefix("OSGI-INF/"));
+            assertTrue(pj.hasPrefix("OSGI-INF/hel"));
+            assertTrue(pj.hasPrefix("OSGI"));
+            assertFalse(pj.hasPrefix("OSGI-INF/x"));
+            assertFalse(pj.hasPrefix("OSGI-OPT/src/"));
+        } finally {
+            pj.close();
+        }
+    }
+
+    public void testManyEntries() throws Exception {
+        File jar = File.createTempFile("pseudojar", ".jar");
+        try {
+            int count = 5000;
+            createJar(jar, count);
+
+            PseudoJar pj = new PseudoJar(jar);
+            int entries = 0;
+            try {
+                for (String entry = pj.nextEntry(); entry != null; entry = pj.nextEntry()) {
+                    entries++;
+                }
+            } finally {
+                pj.close();
+            }
+            assertEquals(count + 1, entries);
+
+            pj = new PseudoJar(jar);
+            try {
+                assertTrue(pj.hasPrefix("OSGI-OPT/src/"));
+                assertFalse(pj.hasPrefix("OSGI-OPT/bin/"));
+                for (int i = 0; i < 100; i++) {
+                    int n = count - 2 - i;
+                    assertEquals("Entry " + n, IO.collect(pj.getEntry("pkg/entry" + n + ".txt")));
+                }
+                assertNull(pj.getEntry("pkg/entry" + count + ".txt"));
+                assertEquals("class Foo {}", IO.collect(pj.getEntry("OSGI-OPT/src/Foo.java")));
+            } finally {
+                pj.close();
+            }
+        } finally {
+            IO.delete(jar);
+        }
+    }
+
+    private static void createJar(File file, int count) throws Exception {
+        Manifest mf = new Manifest();
+        mf.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(file), mf);
+        try {
+            out.putNextEntry(new JarEntry("pkg/"));
+            out.closeEntry();
+            for (int i = 0; i < count - 1; i++) {
+                out.putNextEntry(new JarEntry("pkg/entry" + i + ".txt"));
+                out.write(("Entry " + i).getBytes("UTF-8"));
+                out.closeEntry();
+            }
+            out.putNextEntry(new JarEntry("OSGI-OPT/src/Foo.java"));
+            out.write("class Foo {}".getBytes("UTF-8"));
+            out.closeEntry();
+        } finally {
+            out.close();
+        }
+    }
 }